@@ -0,0 +1,145 @@
+package net.uvavru.maven.plugins.jettyconf.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+import net.uvavru.maven.plugins.jettyconf.types.JettyFiles;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Artifact filtering, path translation and property generation over a
+ * synthetic local repository.<br>
+ * 
+ * Every third artifact is a war, the rest are jars. The path patterns cover
+ * disjoint groups of the repository so that only a single pattern matches
+ * each artifact and the rest have to be rejected. The path cache is fresh for
+ * each invocation, i.e. the filesystem is hit as in a real execution.
+ * 
+ * @author stepan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArtifactBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int artifactCount;
+
+	@Param({ "1", "10", "100" })
+	public int patternCount;
+
+	@Param({ "1" })
+	public int parallelism;
+
+	private File repository;
+
+	private BenchmarkMojo mojo;
+
+	private ArtifactCandidates artifacts;
+
+	private Set<Artifact> filteredArtifacts;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		repository = Files.createTempDirectory("jetty-conf-benchmark").toFile();
+
+		DefaultArtifactHandler jarHandler = new DefaultArtifactHandler("jar");
+		DefaultArtifactHandler warHandler = new DefaultArtifactHandler("war");
+		artifacts = new ArtifactCandidates();
+		for (int i = 0; i < artifactCount; ++i) {
+			boolean war = i % 3 == 0;
+			String groupId = "org.example.group" + (i % patternCount);
+			String artifactId = "artifact" + i;
+			Artifact artifact = new DefaultArtifact(groupId, artifactId,
+					VersionRange.createFromVersion("1.0"), Artifact.SCOPE_COMPILE,
+					war ? "war" : "jar", null, war ? warHandler : jarHandler);
+			artifact.setFile(createArtifactFile(groupId, artifactId, war));
+			artifacts.add(artifact);
+		}
+
+		StringBuilder patterns = new StringBuilder();
+		StringBuilder replacements = new StringBuilder();
+		String repositoryPath = repository.getCanonicalPath().replace("\\", "/");
+		for (int i = 0; i < patternCount; ++i) {
+			if (i > 0) {
+				patterns.append(',');
+				replacements.append(',');
+			}
+			patterns.append(repositoryPath).append("/org/example/group").append(i)
+					.append("/([^/]*)/1\\.0/(.*)");
+			replacements.append("/opt/jetty/lib/group").append(i).append("/$1/$2");
+		}
+
+		mojo = new BenchmarkMojo();
+		mojo.setParallelism(parallelism);
+		mojo.setClasspath("[^:]*:[^:]*:jar:[^:]*", patterns.toString(), replacements.toString());
+		mojo.setWebApp("[^:]*:[^:]*:war:[^:]*", patterns.toString(), replacements.toString());
+
+		filteredArtifacts = mojo.filter(artifacts);
+	}
+
+	private File createArtifactFile(String groupId, String artifactId, boolean war) throws IOException {
+		File dir = new File(repository, groupId.replace('.', '/') + "/" + artifactId + "/1.0");
+		if (war) {
+			File webAppDir = new File(dir, artifactId + "-1.0");
+			webAppDir.mkdirs();
+			return webAppDir;
+		}
+		dir.mkdirs();
+		File jar = new File(dir, artifactId + "-1.0.jar");
+		jar.createNewFile();
+		return jar;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(repository);
+	}
+
+	@Benchmark
+	public Set<Artifact> filterArtifacts() throws Exception {
+		return mojo.filter(artifacts);
+	}
+
+	@Benchmark
+	public JettyFiles translatePaths() throws Exception {
+		ArtifactCandidates candidates = new ArtifactCandidates();
+		return mojo.translate(new LinkedHashSet<Artifact>(filteredArtifacts),
+				candidates.getPathResolutionCache());
+	}
+
+	@Benchmark
+	public String initializeProperties() throws Exception {
+		ArtifactCandidates candidates = new ArtifactCandidates();
+		candidates.addAll(artifacts);
+		mojo.initializeJettyConfProperties(candidates);
+		return mojo.getProject().getProperties().getProperty("jetty.conf-plugin.classpath");
+	}
+}
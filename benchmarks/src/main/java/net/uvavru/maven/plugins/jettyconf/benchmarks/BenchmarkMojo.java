@@ -0,0 +1,63 @@
+package net.uvavru.maven.plugins.jettyconf.benchmarks;
+
+import java.util.Set;
+
+import net.uvavru.maven.plugins.jettyconf.internals.AbstractJettyConfMojo;
+import net.uvavru.maven.plugins.jettyconf.internals.ParallelProcessor;
+import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+import net.uvavru.maven.plugins.jettyconf.types.JettyFiles;
+import net.uvavru.maven.plugins.jettyconf.types.PathResolutionCache;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+/**
+ * Mojo exposing the artifact processing of {@link AbstractJettyConfMojo} to
+ * the benchmarks.<br>
+ * 
+ * There is no maven session so the reactor cache is never used; logging is
+ * disabled.
+ * 
+ * @author stepan
+ *
+ */
+public class BenchmarkMojo extends AbstractJettyConfMojo {
+
+	public BenchmarkMojo() {
+		setLog(new DefaultLog(new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark")));
+		setProject(new MavenProject());
+		webAppResourcesAsDirsOnly = false;
+	}
+
+	public void execute() {
+	}
+
+	public void setClasspath(String matchArtifactPattern, String patterns, String replacements) {
+		classpathMatchArtifactPattern = matchArtifactPattern;
+		classpathPatterns = patterns;
+		classpathReplacements = replacements;
+	}
+
+	public void setWebApp(String matchArtifactPattern, String patterns, String replacements) {
+		webAppMatchArtifactPattern = matchArtifactPattern;
+		webAppPatterns = patterns;
+		webAppReplacements = replacements;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallel = parallelism != 1;
+		this.parallelism = parallelism;
+	}
+
+	public Set<Artifact> filter(ArtifactCandidates artifacts) throws Exception {
+		return filterArtifacts(artifacts, createClasspathMatcher(), createParallelProcessor());
+	}
+
+	public JettyFiles translate(Set<Artifact> artifacts, PathResolutionCache pathCache) throws Exception {
+		ParallelProcessor processor = createParallelProcessor();
+		return translatePathsAndReduceArtifacts(artifacts, classpathPatterns, classpathReplacements, pathCache, processor);
+	}
+}
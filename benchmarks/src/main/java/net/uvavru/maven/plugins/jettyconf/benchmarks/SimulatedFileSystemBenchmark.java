@@ -0,0 +1,118 @@
+package net.uvavru.maven.plugins.jettyconf.benchmarks;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+import net.uvavru.maven.plugins.jettyconf.types.InMemoryFileSystemProbe;
+import net.uvavru.maven.plugins.jettyconf.types.JettyFiles;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Path translation of large dependency graphs against an in-memory filesystem.
+ * <br>
+ *
+ * With no latency the plugin's own overhead is measured, the latency simulates
+ * a slow (e.g. network) filesystem where the parallel mode pays off. The
+ * repository layout and patterns are the same as in {@link ArtifactBenchmark}
+ * but nothing is created on the disk.
+ *
+ * @author stepan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatedFileSystemBenchmark {
+
+	private static final String REPOSITORY = "/simulated/repository";
+
+	@Param({ "1000", "50000" })
+	public int artifactCount;
+
+	@Param({ "10" })
+	public int patternCount;
+
+	@Param({ "0", "50" })
+	public int latencyMicros;
+
+	@Param({ "1", "8" })
+	public int parallelism;
+
+	private InMemoryFileSystemProbe fileSystem;
+
+	private BenchmarkMojo mojo;
+
+	private Set<Artifact> filteredArtifacts;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fileSystem = new InMemoryFileSystemProbe();
+
+		DefaultArtifactHandler jarHandler = new DefaultArtifactHandler("jar");
+		DefaultArtifactHandler warHandler = new DefaultArtifactHandler("war");
+		ArtifactCandidates artifacts = new ArtifactCandidates(fileSystem);
+		for (int i = 0; i < artifactCount; ++i) {
+			boolean war = i % 3 == 0;
+			String groupId = "org.example.group" + (i % patternCount);
+			String artifactId = "artifact" + i;
+			Artifact artifact = new DefaultArtifact(groupId, artifactId,
+					VersionRange.createFromVersion("1.0"), Artifact.SCOPE_COMPILE,
+					war ? "war" : "jar", null, war ? warHandler : jarHandler);
+			String dir = REPOSITORY + "/" + groupId.replace('.', '/') + "/" + artifactId + "/1.0/";
+			File file = war ? fileSystem.addDirectory(dir + artifactId + "-1.0")
+					: fileSystem.addFile(dir + artifactId + "-1.0.jar");
+			artifact.setFile(file);
+			artifacts.add(artifact);
+		}
+		fileSystem.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+
+		String repositoryPath = new File(REPOSITORY).getAbsolutePath().replace("\\", "/");
+		StringBuilder patterns = new StringBuilder();
+		StringBuilder replacements = new StringBuilder();
+		for (int i = 0; i < patternCount; ++i) {
+			if (i > 0) {
+				patterns.append(',');
+				replacements.append(',');
+			}
+			patterns.append(repositoryPath).append("/org/example/group").append(i)
+					.append("/([^/]*)/1\\.0/(.*)");
+			replacements.append("/opt/jetty/lib/group").append(i).append("/$1/$2");
+		}
+
+		mojo = new BenchmarkMojo();
+		mojo.setParallelism(parallelism);
+		mojo.setClasspath("[^:]*:[^:]*:[^:]*:[^:]*", patterns.toString(), replacements.toString());
+
+		filteredArtifacts = mojo.filter(artifacts);
+	}
+
+	@Benchmark
+	public JettyFiles translatePaths() throws Exception {
+		// fresh cache, every file is probed once
+		ArtifactCandidates candidates = new ArtifactCandidates(fileSystem);
+		return mojo.translate(new LinkedHashSet<Artifact>(filteredArtifacts),
+				candidates.getPathResolutionCache());
+	}
+}
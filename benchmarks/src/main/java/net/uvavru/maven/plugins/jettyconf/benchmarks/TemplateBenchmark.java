@@ -0,0 +1,214 @@
+package net.uvavru.maven.plugins.jettyconf.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import net.uvavru.maven.plugins.jettyconf.internals.AtomicFileWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.ContextEntries;
+import net.uvavru.maven.plugins.jettyconf.internals.JettyConfWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.StreamingJettyConfWriter;
+
+import org.codehaus.plexus.interpolation.PropertiesBasedValueSource;
+import org.codehaus.plexus.interpolation.RegexBasedInterpolator;
+import org.codehaus.plexus.interpolation.multi.MultiDelimiterInterpolatorFilterReader;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of a context xml template.<br>
+ * 
+ * Compares the DOM and the streaming injection engines, the DOM injection
+ * followed by the filtering (parseAsXml and filtering) and the filtering of a
+ * template taking the dynamic content from the
+ * {@code jetty.conf-plugin.classpath} and {@code jetty.conf-plugin.webapp}
+ * properties (filtering only). All of them render the same entries. Also
+ * measures the write of the rendered content when it is the same as the file
+ * on disk and when it differs.
+ * 
+ * @author stepan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+
+	/**
+	 * Number of filler elements in the template.
+	 */
+	@Param({ "10", "10000" })
+	public int templateSize;
+
+	@Param({ "100" })
+	public int entryCount;
+
+	private File directory;
+
+	private File template;
+
+	/**
+	 * Template with the property tokens instead of the injection targets.
+	 */
+	private File tokenTemplate;
+
+	private File target;
+
+	private List<File> classpathFiles;
+
+	private List<File> webAppFiles;
+
+	private Properties properties;
+
+	private byte[] rendered;
+
+	private byte[] changed;
+
+	private boolean writeChangedContent;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("jetty-conf-benchmark").toFile();
+		template = new File(directory, "template.xml");
+		tokenTemplate = new File(directory, "token-template.xml");
+		target = new File(directory, "context.xml");
+
+		FileUtils.fileWrite(template.getPath(), "UTF-8", templateContent("", ""));
+		FileUtils.fileWrite(tokenTemplate.getPath(), "UTF-8",
+				templateContent("${jetty.conf-plugin.classpath}", "${jetty.conf-plugin.webapp}"));
+
+		classpathFiles = new ArrayList<File>();
+		webAppFiles = new ArrayList<File>();
+		for (int i = 0; i < entryCount; ++i) {
+			classpathFiles.add(new File(directory, "lib/artifact" + i + "-1.0.jar"));
+			if (i % 10 == 0) {
+				webAppFiles.add(new File(directory, "webapp" + i));
+			}
+		}
+
+		properties = new Properties();
+		properties.setProperty("contextPath", "/benchmark");
+		properties.setProperty("jetty.conf-plugin.classpath", ContextEntries.classpath(classpathFiles));
+		StringBuilder webApp = new StringBuilder();
+		for (File file : webAppFiles) {
+			webApp.append("\n<Item>").append(ContextEntries.webAppResource(file)).append("</Item>");
+		}
+		properties.setProperty("jetty.conf-plugin.webapp", webApp.toString());
+		for (int i = 0; i < 10; ++i) {
+			properties.setProperty("value" + i, "value of the parameter " + i);
+		}
+
+		rendered = renderStreaming();
+		changed = rendered.clone();
+		changed[changed.length / 2] = (byte) 'X';
+		AtomicFileWriter.write(target, rendered);
+	}
+
+	private String templateContent(String classpath, String webApp) {
+		StringBuilder content = new StringBuilder();
+		content.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		content.append("<Configure class=\"org.eclipse.jetty.webapp.WebAppContext\">\n");
+		content.append("  <Set name=\"contextPath\">${contextPath}</Set>\n");
+		content.append("  <Set name=\"extraClasspath\">").append(classpath).append("</Set>\n");
+		content.append("  <Set name=\"baseResource\">\n");
+		content.append("    <New class=\"org.eclipse.jetty.util.resource.ResourceCollection\">\n");
+		content.append("      <Arg><Array type=\"java.lang.String\">").append(webApp).append("</Array></Arg>\n");
+		content.append("    </New>\n");
+		content.append("  </Set>\n");
+		for (int i = 0; i < templateSize; ++i) {
+			content.append("  <Call name=\"setInitParameter\"><Arg>param").append(i)
+					.append("</Arg><Arg>${value").append(i % 10).append("}</Arg></Call>\n");
+		}
+		content.append("</Configure>\n");
+		return content.toString();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	public byte[] renderDom() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new JettyConfWriter(classpathFiles, webAppFiles).writeToStream(outputStream, template);
+		return outputStream.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] renderStreaming() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new StreamingJettyConfWriter(classpathFiles, webAppFiles).writeToStream(outputStream, template);
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * DOM injection of the entries followed by the filtering of the result.
+	 */
+	@Benchmark
+	public String renderDomAndFilter() throws Exception {
+		return filter(new ByteArrayInputStream(renderDom()));
+	}
+
+	/**
+	 * Filtering of the template with the entries in the properties.
+	 */
+	@Benchmark
+	public String filterOnly() throws Exception {
+		return filter(Files.newInputStream(tokenTemplate.toPath()));
+	}
+
+	private String filter(InputStream inputStream) throws IOException {
+		RegexBasedInterpolator interpolator = new RegexBasedInterpolator();
+		interpolator.addValueSource(new PropertiesBasedValueSource(properties));
+
+		Reader reader = new MultiDelimiterInterpolatorFilterReader(
+				new InputStreamReader(inputStream, "UTF-8"), interpolator);
+		Writer writer = new StringWriter();
+		try {
+			IOUtil.copy(reader, writer);
+		} finally {
+			IOUtil.close(reader);
+		}
+		return writer.toString();
+	}
+
+	@Benchmark
+	public boolean writeUnchanged() throws IOException {
+		return AtomicFileWriter.writeIfChanged(target, rendered);
+	}
+
+	@Benchmark
+	public boolean writeChanged() throws IOException {
+		// alternate the content so that every invocation really writes
+		writeChangedContent = !writeChangedContent;
+		return AtomicFileWriter.writeIfChanged(target, writeChangedContent ? changed : rendered);
+	}
+}
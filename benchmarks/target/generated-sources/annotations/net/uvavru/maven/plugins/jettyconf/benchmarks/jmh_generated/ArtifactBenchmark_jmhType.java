@@ -0,0 +1,4 @@
+package net.uvavru.maven.plugins.jettyconf.benchmarks.jmh_generated;
+public class ArtifactBenchmark_jmhType extends ArtifactBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package net.uvavru.maven.plugins.jettyconf.benchmarks.jmh_generated;
+public class SimulatedFileSystemBenchmark_jmhType extends SimulatedFileSystemBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package net.uvavru.maven.plugins.jettyconf.benchmarks.jmh_generated;
+public class TemplateBenchmark_jmhType extends TemplateBenchmark_jmhType_B3 {
+}
+
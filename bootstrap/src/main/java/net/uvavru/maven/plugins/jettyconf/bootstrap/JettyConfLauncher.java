@@ -0,0 +1,106 @@
+package net.uvavru.maven.plugins.jettyconf.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.util.resource.ResourceCollection;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+/**
+ * Configures {@link WebAppContext}s from launcher descriptors.<br>
+ *
+ * The descriptor carries exactly what the plugin would inject into the
+ * context xml file, applying it directly spares Jetty the xml parsing and the
+ * reflective {@code XmlConfiguration} calls on every (re)deploy:
+ * <ul>
+ * <li>the context path</li>
+ * <li>the classpath entries as the extra classpath</li>
+ * <li>the web app resources as the base resource collection</li>
+ * <li>the properties as the context init parameters</li>
+ * </ul>
+ *
+ * @author stepan
+ *
+ */
+public class JettyConfLauncher {
+
+	private JettyConfLauncher() {
+	}
+
+	/**
+	 * @param descriptorFile
+	 * @return new context configured according to the descriptor
+	 * @throws IOException
+	 */
+	public static WebAppContext createContext(File descriptorFile) throws IOException {
+		return configure(new WebAppContext(), descriptorFile);
+	}
+
+	/**
+	 * @param context
+	 * @param descriptorFile
+	 * @return the context
+	 * @throws IOException
+	 */
+	public static WebAppContext configure(WebAppContext context, File descriptorFile) throws IOException {
+		return configure(context, LauncherDescriptor.read(descriptorFile));
+	}
+
+	/**
+	 * @param context
+	 * @param descriptor
+	 * @return the context
+	 * @throws IOException
+	 */
+	public static WebAppContext configure(WebAppContext context, LauncherDescriptor descriptor) throws IOException {
+		if (descriptor.getContextPath() != null) {
+			context.setContextPath(descriptor.getContextPath());
+		}
+
+		if (!descriptor.getClasspath().isEmpty()) {
+			StringBuilder extraClasspath = new StringBuilder();
+			for (String entry : descriptor.getClasspath()) {
+				if (extraClasspath.length() > 0) {
+					extraClasspath.append(';');
+				}
+				extraClasspath.append(entry);
+			}
+			context.setExtraClasspath(extraClasspath.toString());
+		}
+
+		if (!descriptor.getResources().isEmpty()) {
+			context.setBaseResource(new ResourceCollection(descriptor.getResources().toArray(
+					new String[descriptor.getResources().size()])));
+		}
+
+		for (Map.Entry<String, String> property : descriptor.getProperties().entrySet()) {
+			context.setInitParameter(property.getKey(), property.getValue());
+		}
+		return context;
+	}
+
+	/**
+	 * Starts a server with a context per descriptor.
+	 *
+	 * @param args
+	 *            port followed by the descriptor files
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: " + JettyConfLauncher.class.getName() + " port descriptor...");
+			System.exit(1);
+		}
+		Server server = new Server(Integer.parseInt(args[0]));
+		ContextHandlerCollection contexts = new ContextHandlerCollection();
+		for (int i = 1; i < args.length; ++i) {
+			contexts.addHandler(createContext(new File(args[i])));
+		}
+		server.setHandler(contexts);
+		server.start();
+		server.join();
+	}
+}
@@ -0,0 +1,145 @@
+package net.uvavru.maven.plugins.jettyconf.bootstrap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Launcher descriptor written by the jetty-conf-maven-plugin.<br>
+ *
+ * The first line is the format and its version, every other line is a tab
+ * separated key and value(s), backslashes, tabs and line breaks in the values
+ * are escaped. Unknown keys are ignored so that newer plugins stay readable
+ * as long as the version doesn't change.
+ *
+ * @author stepan
+ *
+ */
+public class LauncherDescriptor {
+
+	public static final String FORMAT = "jetty-conf-launcher";
+
+	public static final int VERSION = 1;
+
+	private final File file;
+	private String contextPath;
+	private final List<String> classpath = new ArrayList<String>();
+	private final List<String> resources = new ArrayList<String>();
+	private final Map<String, String> properties = new LinkedHashMap<String, String>();
+
+	private LauncherDescriptor(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the descriptor cannot be read or has unsupported format
+	 */
+	public static LauncherDescriptor read(File file) throws IOException {
+		LauncherDescriptor descriptor = new LauncherDescriptor(file);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String header = reader.readLine();
+			if (header == null || !header.equals(FORMAT + "\t" + VERSION)) {
+				throw new IOException("Unsupported launcher descriptor " + file + ": " + header
+						+ ", expected " + FORMAT + " version " + VERSION);
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0) {
+					descriptor.parse(line.split("\t", -1));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return descriptor;
+	}
+
+	private void parse(String[] fields) throws IOException {
+		String key = fields[0];
+		if ("contextPath".equals(key)) {
+			contextPath = value(fields, 1);
+		} else if ("classpath".equals(key)) {
+			classpath.add(value(fields, 1));
+		} else if ("resource".equals(key)) {
+			resources.add(value(fields, 1));
+		} else if ("property".equals(key)) {
+			properties.put(value(fields, 1), value(fields, 2));
+		}
+	}
+
+	private String value(String[] fields, int index) throws IOException {
+		if (index >= fields.length) {
+			throw new IOException("Malformed '" + fields[0] + "' line in launcher descriptor " + file);
+		}
+		return unescape(fields[index]);
+	}
+
+	static String unescape(String value) {
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+		StringBuilder unescaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char escaped = value.charAt(++i);
+				switch (escaped) {
+				case 't':
+					unescaped.append('\t');
+					break;
+				case 'n':
+					unescaped.append('\n');
+					break;
+				case 'r':
+					unescaped.append('\r');
+					break;
+				default:
+					unescaped.append(escaped);
+				}
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return context path or {@code null} if not set
+	 */
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	/**
+	 * @return classpath entry URIs in the classpath order
+	 */
+	public List<String> getClasspath() {
+		return Collections.unmodifiableList(classpath);
+	}
+
+	/**
+	 * @return web app resource URIs in the overlay order
+	 */
+	public List<String> getResources() {
+		return Collections.unmodifiableList(resources);
+	}
+
+	public Map<String, String> getProperties() {
+		return Collections.unmodifiableMap(properties);
+	}
+}
@@ -1,35 +1,59 @@
 package net.uvavru.maven.plugins.jettyconf;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 import net.uvavru.maven.plugins.jettyconf.internals.AbstractJettyConfMojo;
+import net.uvavru.maven.plugins.jettyconf.internals.AtomicFileWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.ChangeDetectingOutputStream;
+import net.uvavru.maven.plugins.jettyconf.internals.CompiledJettyConfWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.ContextXmlWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.ExecutionFingerprint;
+import net.uvavru.maven.plugins.jettyconf.internals.ExecutionReport;
+import net.uvavru.maven.plugins.jettyconf.internals.InjectionTarget;
 import net.uvavru.maven.plugins.jettyconf.internals.JettyConfWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.LauncherDescriptor;
+import net.uvavru.maven.plugins.jettyconf.internals.PackageIndex;
+import net.uvavru.maven.plugins.jettyconf.internals.ParallelProcessor;
+import net.uvavru.maven.plugins.jettyconf.internals.StreamPipe;
+import net.uvavru.maven.plugins.jettyconf.internals.StreamingJettyConfWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.TokenFilter;
 import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+import net.uvavru.maven.plugins.jettyconf.types.ContextTemplate;
+import net.uvavru.maven.plugins.jettyconf.types.FileStampCache;
 import net.uvavru.maven.plugins.jettyconf.types.JettyFiles;
 
-import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.shared.filtering.MavenFileFilter;
 import org.apache.maven.shared.filtering.MavenFilteringException;
 import org.apache.maven.shared.filtering.MavenResourcesExecution;
+import org.apache.maven.settings.io.xpp3.SettingsXpp3Writer;
+import org.codehaus.plexus.interpolation.PrefixedObjectValueSource;
+import org.codehaus.plexus.interpolation.SingleResponseValueSource;
+import org.codehaus.plexus.interpolation.ValueSource;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.FileUtils.FilterWrapper;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.ReaderFactory;
@@ -37,17 +61,18 @@ import org.codehaus.plexus.util.ReaderFactory;
 /**
  * @goal copy-from-template
  * @requiresDependencyResolution test
+ * @threadSafe
  * @description Copies files from the template directory to the
  */
 public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 
 	/**
 	 * Original location of Jetty context.xml style file which will be used as a
-	 * template.
+	 * template.<br>
+	 * Either this or {@link #contextXmlTemplateDirectory} is required.
 	 * 
 	 * @since 1.0
 	 * @parameter expression="${contextXmlTemplate}"
-	 * @required
 	 */
 	private File contextXmlTemplate;
 
@@ -55,6 +80,41 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 		return contextXmlTemplate;
 	}
 
+	/**
+	 * Directory with Jetty context.xml style files which will be used as
+	 * templates.<br>
+	 * Artifacts are resolved and translated only once and all the templates
+	 * are rendered concurrently into {@link #confTargetDir} preserving their
+	 * relative paths.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${contextXmlTemplateDirectory}"
+	 */
+	private File contextXmlTemplateDirectory;
+
+	public File getContextXmlTemplateDirectory() {
+		return contextXmlTemplateDirectory;
+	}
+
+	/**
+	 * Comma separated list of ant style patterns of templates in the
+	 * {@link #contextXmlTemplateDirectory} to render. All xml files are
+	 * rendered by default.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${contextXmlTemplateIncludes}"
+	 */
+	private String contextXmlTemplateIncludes = "**/*.xml";
+
+	/**
+	 * Comma separated list of ant style patterns of files in the
+	 * {@link #contextXmlTemplateDirectory} not to render.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${contextXmlTemplateExcludes}" default-value=""
+	 */
+	private String contextXmlTemplateExcludes = "";
+
 	/**
 	 * Original location of Jetty context.xml style file which will be used as a
 	 * template.
@@ -69,105 +129,660 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 		this.contextXmlTemplate = contextXmlTemplate;
 	}
 
+	/**
+	 * Whether to skip the execution if none of its inputs (ie. the template,
+	 * the dependency artifacts, whether the paths they translate to and the
+	 * alternate web app directories exist as directories, plugin parameters
+	 * and, when filtering, the properties, the project model and the
+	 * settings) changed since the last execution. The check doesn't
+	 * translate the artifacts, that happens only if the inputs changed.<br>
+	 * The fingerprint of the inputs is stored next to the generated file.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.incremental}" default-value="true"
+	 */
+	protected boolean incremental;
+
+	/**
+	 * Whether to write an index of packages of the classpath entries (see
+	 * {@link PackageIndex}) into {@link #confTargetDir}. Jars are scanned
+	 * concurrently and their packages are cached next to the index until the
+	 * jar changes. The index is refreshed on every execution, even if the
+	 * context files are up to date, since packages of the directory entries
+	 * are not covered by the fingerprint.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.packageIndex}" default-value="false"
+	 */
+	protected boolean packageIndex;
+	
+	public static final String PACKAGE_INDEX_NAME = "jetty-classpath.idx";
+
+	/**
+	 * Descriptor with the context path, the classpath entries, the web app
+	 * resources and the {@link #launcherProperties} for the
+	 * jetty-conf-bootstrap launcher. The launcher configures a
+	 * {@code WebAppContext} directly which is cheaper than applying the
+	 * context xml file by the reflective {@code XmlConfiguration}. The
+	 * descriptor is not written if not set.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.launcherDescriptor}"
+	 */
+	protected File launcherDescriptor;
+	
+	/**
+	 * Context path written into the {@link #launcherDescriptor}.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.launcherContextPath}" default-value="/${project.artifactId}"
+	 */
+	protected String launcherContextPath;
+	
+	/**
+	 * Comma separated names of properties written with their values into the
+	 * {@link #launcherDescriptor}. The launcher sets them as init parameters
+	 * of the context. Values are looked up in the user, project and system
+	 * properties.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.launcherProperties}" default-value=""
+	 */
+	protected String launcherProperties = "";
+
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		startReport();
+		try {
+			renderStaleTemplates();
+			buildContextExecuted();
+		} finally {
+			finishReport();
+		}
+	}
+	
+	/**
+	 * Renders all the templates whose inputs changed.
+	 * 
+	 * @throws MojoExecutionException
+	 * @throws MojoFailureException
+	 */
+	private void renderStaleTemplates() throws MojoExecutionException, MojoFailureException {
+		List<ContextTemplate> templates = collectTemplates();
+		report.count(ExecutionReport.TEMPLATES, templates.size());
+		
+		if (isUnchangedSinceLastBuild(templates)) {
+			getLog().info("No relevant change in the incremental build, context xml files are up to date");
+			return;
+		}
 		
 		ArtifactCandidates artifactCandidates = jettyArtifactCandidates();
 		
-		InputStream inStream = readTemplateFile(artifactCandidates);
+		final Map<ContextTemplate, ExecutionFingerprint> fingerprints = new HashMap<ContextTemplate, ExecutionFingerprint>();
+		List<ContextTemplate> staleTemplates = new ArrayList<ContextTemplate>();
+		if (incremental) {
+			long start = report.start();
+			ExecutionFingerprint fingerprint = computeFingerprint(artifactCandidates, templates);
+			for (ContextTemplate template : templates) {
+				ExecutionFingerprint templateFingerprint = computeTemplateFingerprint(fingerprint, template);
+				if (templateFingerprint.isUpToDate(template.getFingerprintFile(), template.getTargetFile())
+						&& !isClasspathOutputMissing()
+						&& (launcherDescriptor == null || launcherDescriptor.isFile())) {
+					getLog().info(
+							"Context xml file is up to date: " + template.getTargetFile());
+				} else {
+					staleTemplates.add(template);
+					fingerprints.put(template, templateFingerprint);
+				}
+			}
+			report.stop(ExecutionReport.FINGERPRINT, start);
+		} else {
+			staleTemplates.addAll(templates);
+		}
+		
+		if (staleTemplates.isEmpty()) {
+			if (packageIndex) {
+				// packages of the directory entries are not covered by the
+				// fingerprint
+				writePackageIndex(filterAndTranslateClasspathEntries(artifactCandidates));
+			}
+			return;
+		}
+		
+		// the package index is written along with the translation
+		JettyFiles classpathFiles = null;
+		JettyFiles webappFiles = null;
+		if (parseAsXml || filtering || launcherDescriptor != null || packageIndex) {
+			classpathFiles = filterAndTranslateClasspathArtifacts(artifactCandidates);
+			webappFiles = filterAndTranslateWebAppArtifacts(artifactCandidates);
+		}
 		
-		filterAndWriteFileIfChanged(inStream);
+		if (!parseAsXml && filtering) {
+			// if filtering is not enabled, there is no need to generate these properties
+			initializeJettyConfProperties(classpathFiles, webappFiles);
+		}
+		if (launcherDescriptor != null) {
+			writeLauncherDescriptor(classpathFiles, webappFiles);
+		}
+		if (filtering && !FILTERING_ENGINE_MAVEN.equals(filteringEngine)) {
+			// shared by the templates rendered concurrently
+			filteringProperties = collectFilteringProperties();
+		}
+		
+		final JettyFiles templateClasspathFiles = classpathFiles;
+		final JettyFiles templateWebappFiles = webappFiles;
+		try {
+			new ParallelProcessor(parallelism).process(staleTemplates, new ParallelProcessor.Task<ContextTemplate, Void>() {
 
+				public Void process(ContextTemplate template) throws MojoExecutionException {
+					try {
+						generate(template, templateClasspathFiles, templateWebappFiles);
+					} catch (MojoFailureException e) {
+						throw new MojoExecutionException(e.getMessage(), e);
+					}
+					
+					ExecutionFingerprint fingerprint = fingerprints.get(template);
+					if (fingerprint != null) {
+						try {
+							fingerprint.store(template.getFingerprintFile());
+						} catch (IOException e) {
+							getLog().warn("Cannot store execution fingerprint: " + e.getMessage());
+						}
+					}
+					return null;
+				}
+			});
+		} catch (MojoExecutionException e) {
+			if (e.getCause() instanceof MojoFailureException) {
+				throw (MojoFailureException) e.getCause();
+			}
+			throw e;
+		}
 	}
 	
-	private InputStream readTemplateFile(ArtifactCandidates artifactCandidates) throws MojoExecutionException {
-		if (parseAsXml) {
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+	/**
+	 * Whether the incremental build of the IDE changed neither the templates,
+	 * nor the dependency set nor the project output directory and all the
+	 * generated files exist. The IDE then doesn't pay for the artifact
+	 * resolution and fingerprinting on every save.
+	 * 
+	 * @param templates
+	 * @return
+	 */
+	private boolean isUnchangedSinceLastBuild(List<ContextTemplate> templates) {
+		List<File> inputs = new ArrayList<File>();
+		if (contextXmlTemplate != null) {
+			inputs.add(contextXmlTemplate);
+		}
+		if (contextXmlTemplateDirectory != null) {
+			inputs.add(contextXmlTemplateDirectory);
+		}
+		if (!isUnchangedInBuildContext(inputs)) {
+			return false;
+		}
+		for (ContextTemplate template : templates) {
+			if (!template.getTargetFile().isFile()) {
+				return false;
+			}
+		}
+		return !isClasspathOutputMissing() && !isPackageIndexMissing()
+				&& (launcherDescriptor == null || launcherDescriptor.isFile());
+	}
+	
+	/**
+	 * @return whether the package index should be written but doesn't exist
+	 */
+	private boolean isPackageIndexMissing() {
+		return packageIndex && !getPackageIndexFile().isFile();
+	}
+	
+	private File getPackageIndexFile() {
+		return new File(confTargetDir, PACKAGE_INDEX_NAME);
+	}
+	
+	@Override
+	protected void classpathEntriesTranslated(JettyFiles classpathFiles) throws MojoExecutionException {
+		if (packageIndex) {
+			writePackageIndex(classpathFiles);
+		}
+	}
 	
-			JettyFiles classpathFiles = filterAndTranslateClasspathArtifacts(artifactCandidates);
-			JettyFiles webappFiles = filterAndTranslateWebAppArtifacts(artifactCandidates);
+	/**
+	 * Scans the classpath entries concurrently and writes the package index
+	 * if it changed. Jars found in the cache are not scanned, directories are
+	 * always scanned since their timestamp doesn't reflect changes deep in the
+	 * tree.
+	 * 
+	 * @param classpathFiles
+	 * @throws MojoExecutionException
+	 */
+	private void writePackageIndex(JettyFiles classpathFiles) throws MojoExecutionException {
+		long start = report.start();
+		File indexFile = getPackageIndexFile();
+		File cacheFile = new File(indexFile.getParentFile(), "." + indexFile.getName() + ".cache");
+		final FileStampCache cache = FileStampCache.load(cacheFile);
+		
+		List<List<String>> packages = new ParallelProcessor(parallelism).process(classpathFiles, new ParallelProcessor.Task<File, List<String>>() {
+
+			public List<String> process(File file) throws MojoExecutionException {
+				boolean cacheable = file.isFile();
+				if (cacheable) {
+					String value = cache.get(file);
+					if (value != null) {
+						return PackageIndex.fromCacheValue(value);
+					}
+				}
+				try {
+					List<String> entryPackages = PackageIndex.scan(file);
+					report.count(ExecutionReport.SCANNED_ENTRIES, 1);
+					if (cacheable) {
+						cache.put(file, PackageIndex.toCacheValue(entryPackages));
+					}
+					return entryPackages;
+				} catch (IOException e) {
+					throw new MojoExecutionException("Cannot scan classpath entry: " + file, e);
+				}
+			}
+		});
+		
+		try {
+			if (AtomicFileWriter.writeIfChanged(indexFile, PackageIndex.create(classpathFiles, packages).getBytes("UTF-8"))) {
+				getLog().info("Package index of " + classpathFiles.size() + " classpath entries written at: " + indexFile);
+				refresh(indexFile);
+			} else {
+				getLog().debug("Preserving old package index at: " + indexFile);
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot write package index: " + e.getMessage(), e);
+		}
+		try {
+			cache.store(cacheFile);
+		} catch (IOException e) {
+			getLog().warn("Cannot store package scan cache: " + e.getMessage());
+		}
+		getLog().debug("Classpath packages indexed, " + cache);
+		report.stop(ExecutionReport.PACKAGE_INDEX, start);
+	}
 	
-			// Write new configuration file to an output stream
-			JettyConfWriter writer = new JettyConfWriter(classpathFiles,
+	/**
+	 * Writes the {@link #launcherDescriptor} if its content changed.
+	 * 
+	 * @param classpathFiles
+	 * @param webappFiles
+	 * @throws MojoExecutionException
+	 */
+	private void writeLauncherDescriptor(JettyFiles classpathFiles, JettyFiles webappFiles) throws MojoExecutionException {
+		LauncherDescriptor descriptor = new LauncherDescriptor();
+		descriptor.setContextPath(launcherContextPath);
+		descriptor.setClasspathFiles(classpathFiles);
+		descriptor.setWebAppFiles(webappFiles);
+		for (String name : launcherPropertyNames()) {
+			String value = launcherPropertyValue(name);
+			if (value == null) {
+				getLog().warn("Launcher property '" + name + "' is not defined");
+			} else {
+				descriptor.getProperties().put(name, value);
+			}
+		}
+		
+		long start = report.start();
+		try {
+			if (descriptor.writeIfChanged(launcherDescriptor)) {
+				report.count(ExecutionReport.FILES_WRITTEN, 1);
+				getLog().info("Launcher descriptor written at: " + launcherDescriptor);
+				refresh(launcherDescriptor);
+			} else {
+				report.count(ExecutionReport.FILES_PRESERVED, 1);
+				getLog().info("Preserving old launcher descriptor at: " + launcherDescriptor);
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot write launcher descriptor: " + e.getMessage(), e);
+		} finally {
+			report.stop(ExecutionReport.WRITE_IF_CHANGED, start);
+		}
+	}
+	
+	private List<String> launcherPropertyNames() {
+		List<String> names = new ArrayList<String>();
+		for (String name : launcherProperties.split(",")) {
+			if (name.trim().length() > 0) {
+				names.add(name.trim());
+			}
+		}
+		return names;
+	}
+	
+	private String launcherPropertyValue(String name) {
+		String value = session == null ? null : session.getUserProperties().getProperty(name);
+		if (value == null) {
+			value = project.getProperties().getProperty(name);
+		}
+		if (value == null) {
+			value = System.getProperty(name);
+		}
+		return value;
+	}
+	
+	/**
+	 * Collects all the templates to render.
+	 * 
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	protected List<ContextTemplate> collectTemplates() throws MojoExecutionException {
+		List<ContextTemplate> templates = new ArrayList<ContextTemplate>();
+		
+		if (contextXmlTemplate != null) {
+			templates.add(new ContextTemplate(contextXmlTemplate,
+					new File(confTargetDir, contextXmlTemplate.getName())));
+		}
+		
+		if (contextXmlTemplateDirectory != null) {
+			if (!contextXmlTemplateDirectory.isDirectory()) {
+				throw new MojoExecutionException("Context xml template directory doesn't exist: "
+						+ contextXmlTemplateDirectory);
+			}
+			DirectoryScanner scanner = new DirectoryScanner();
+			scanner.setBasedir(contextXmlTemplateDirectory);
+			scanner.setIncludes(contextXmlTemplateIncludes.split(","));
+			if (contextXmlTemplateExcludes.length() > 0) {
+				scanner.setExcludes(contextXmlTemplateExcludes.split(","));
+			}
+			scanner.scan();
+			
+			String[] includedFiles = scanner.getIncludedFiles();
+			Arrays.sort(includedFiles);
+			for (String includedFile : includedFiles) {
+				templates.add(new ContextTemplate(new File(contextXmlTemplateDirectory, includedFile),
+						new File(confTargetDir, includedFile)));
+			}
+		}
+		
+		if (templates.isEmpty()) {
+			throw new MojoExecutionException(
+					"No context xml template found, set either 'contextXmlTemplate' or 'contextXmlTemplateDirectory'");
+		}
+		return templates;
+	}
+	
+	/**
+	 * Renders the template and writes it if its content changed.
+	 * 
+	 * @param template
+	 * @param classpathFiles
+	 * @param webappFiles
+	 * @throws MojoExecutionException
+	 * @throws MojoFailureException
+	 */
+	protected void generate(ContextTemplate template, JettyFiles classpathFiles, JettyFiles webappFiles) throws MojoExecutionException, MojoFailureException {
+		report.count(ExecutionReport.BYTES_IN, template.getTemplateFile().length());
+		
+		File configurationFile = template.getTargetFile();
+		ChangeDetectingOutputStream outStream;
+		try {
+			outStream = new ChangeDetectingOutputStream(configurationFile);
+		} catch (IOException e) {
+			throw new MojoExecutionException(
+					"Cannot write Jetty configuration: " + e.getMessage(), e);
+		}
+		try {
+			// conditionally filter the output
+			if (filtering) {
+				filterTemplate(template, classpathFiles, webappFiles, outStream);
+			} else {
+				writeTemplate(template, classpathFiles, webappFiles, outStream);
+			}
+			commitFileIfChanged(outStream, configurationFile);
+		} finally {
+			outStream.discard();
+		}
+	}
+	
+	/**
+	 * Computes the fingerprint of the inputs shared by all the templates.
+	 * Only the inputs which are cheap to collect are considered, the
+	 * artifacts are translated only if a template is stale.
+	 * 
+	 * @param artifactCandidates
+	 * @param templates
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	private ExecutionFingerprint computeFingerprint(ArtifactCandidates artifactCandidates,
+			List<ContextTemplate> templates) throws MojoExecutionException {
+		ExecutionFingerprint fingerprint = new ExecutionFingerprint();
+		
+		fingerprintParameters(fingerprint);
+		fingerprintArtifacts(fingerprint, artifactCandidates);
+		
+		if (filtering) {
+			fingerprint.addAll("project", project.getProperties());
+			fingerprint.addAll("user", session.getUserProperties());
+			fingerprint.addAll("system", referencedSystemProperties(templates));
+			
+			// ${project.*} and ${settings.*} expressions
+			try {
+				StringWriter model = new StringWriter();
+				new MavenXpp3Writer().write(model, project.getModel());
+				fingerprint.add("model", model);
+				if (session.getSettings() != null) {
+					StringWriter settings = new StringWriter();
+					new SettingsXpp3Writer().write(settings, session.getSettings());
+					fingerprint.add("settings", settings);
+				}
+			} catch (IOException e) {
+				throw new MojoExecutionException("Cannot fingerprint the project model: " + e.getMessage(), e);
+			}
+		}
+		
+		return fingerprint;
+	}
+	
+	/**
+	 * Selects the system properties whose names occur in the templates or in
+	 * the user properties. The rest (the environment, the JVM and the
+	 * launcher properties such as {@code sun.java.command}) differs from
+	 * shell to shell and goal to goal without changing the output. Project
+	 * properties and the model are interpolated already, system properties
+	 * they refer to are covered by their values.
+	 * 
+	 * @param templates
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	private Map<String, String> referencedSystemProperties(List<ContextTemplate> templates) throws MojoExecutionException {
+		List<String> texts = new ArrayList<String>();
+		for (ContextTemplate template : templates) {
+			try {
+				texts.add(FileUtils.fileRead(template.getTemplateFile(),
+						encoding == null || encoding.length() == 0 ? null : encoding));
+			} catch (IOException e) {
+				throw new MojoExecutionException(
+						"Cannot read Jetty configuration template: " + e.getMessage(), e);
+			}
+		}
+		Properties userProperties = session.getUserProperties();
+		for (String name : userProperties.stringPropertyNames()) {
+			texts.add(userProperties.getProperty(name));
+		}
+		
+		Map<String, String> referenced = new HashMap<String, String>();
+		Properties systemProperties = session.getSystemProperties();
+		for (String name : systemProperties.stringPropertyNames()) {
+			for (String text : texts) {
+				if (text.contains(name)) {
+					referenced.put(name, systemProperties.getProperty(name));
+					break;
+				}
+			}
+		}
+		return referenced;
+	}
+	
+	private ExecutionFingerprint computeTemplateFingerprint(ExecutionFingerprint fingerprint, ContextTemplate template) throws MojoExecutionException {
+		ExecutionFingerprint templateFingerprint = fingerprint.copy();
+		
+		templateFingerprint.add("contextXmlTemplate", template.getTemplateFile().getAbsolutePath());
+		templateFingerprint.add("target", template.getTargetFile().getAbsolutePath());
+		try {
+			templateFingerprint.addContent("contextXmlTemplate", template.getTemplateFile());
+		} catch (IOException e) {
+			throw new MojoExecutionException(
+					"Cannot read Jetty configuration template: " + e.getMessage(), e);
+		}
+		return templateFingerprint;
+	}
+	
+	@Override
+	protected void fingerprintParameters(ExecutionFingerprint fingerprint) {
+		super.fingerprintParameters(fingerprint);
+		fingerprint.add("encoding", encoding);
+		fingerprint.add("delimiters", delimiters);
+		fingerprint.add("useDefaultDelimiters", useDefaultDelimiters);
+		fingerprint.add("escapeWindowsPaths", escapeWindowsPaths);
+		fingerprint.add("filtering", filtering);
+		fingerprint.add("filteringEngine", filteringEngine);
+		fingerprint.add("parseAsXml", parseAsXml);
+		fingerprint.add("injectionEngine", injectionEngine);
+		fingerprint.add("classpathInjectionXPath", classpathInjectionXPath);
+		fingerprint.add("webAppInjectionXPath", webAppInjectionXPath);
+		fingerprint.add("packageIndex", packageIndex);
+		fingerprint.add("launcherDescriptor", launcherDescriptor == null ? null : launcherDescriptor.getAbsolutePath());
+		fingerprint.add("launcherContextPath", launcherContextPath);
+		for (String name : launcherPropertyNames()) {
+			fingerprint.add("launcherProperty." + name, launcherPropertyValue(name));
+		}
+	}
+	
+	/**
+	 * Writes the template with injected dynamic content (if {@link #parseAsXml})
+	 * into the stream.
+	 * 
+	 * @param template
+	 * @param classpathFiles
+	 * @param webappFiles
+	 * @param outStream
+	 * @throws MojoExecutionException
+	 */
+	private void writeTemplate(ContextTemplate template, JettyFiles classpathFiles, JettyFiles webappFiles,
+			OutputStream outStream) throws MojoExecutionException {
+		if (parseAsXml) {
+			ContextXmlWriter writer = createContextXmlWriter(template, classpathFiles,
 					webappFiles);
 	
 			try {
-				writer.writeToStream(outputStream, contextXmlTemplate);
-				
-				return new ByteArrayInputStream(
-						outputStream.toByteArray());
+				writer.writeToStream(outStream, template.getTemplateFile());
 			} catch (Exception e) {
 				throw new MojoExecutionException(
 						"Cannot generate Jetty configuration: " + e.getMessage(), e);
 			}
 		} else {
+			InputStream inStream = null;
 			try {
-				if (filtering) {
-					// if filtering is not enabled, there is no need to generate these properties
-					initializeJettyConfProperties(artifactCandidates);
-				}
-				
-				return new FileInputStream(contextXmlTemplate);
-			} catch (Exception e) {
+				inStream = new FileInputStream(template.getTemplateFile());
+				IOUtil.copy(inStream, outStream);
+			} catch (IOException e) {
 				throw new MojoExecutionException(
 						"Cannot read Jetty configuration template: " + e.getMessage(), e);
+			} finally {
+				IOUtil.close(inStream);
 			}
 		}
 	}
 	
-	private void filterAndWriteFileIfChanged(InputStream inStream) throws MojoExecutionException, MojoFailureException {
-		// conditionally filter the output
-		if (filtering) {
-			
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-			
-			filterInputToOutputStream(inStream, outputStream);
-			writeFileIfChanged(outputStream.toByteArray());
-		} else {
+	/**
+	 * Filters the template into the stream. The injection (if
+	 * {@link #parseAsXml}) runs in its own thread and feeds the filters
+	 * through a pipe, the document is never held in memory as a whole.
+	 * 
+	 * @param template
+	 * @param classpathFiles
+	 * @param webappFiles
+	 * @param outStream
+	 * @throws MojoExecutionException
+	 * @throws MojoFailureException
+	 */
+	private void filterTemplate(final ContextTemplate template, final JettyFiles classpathFiles,
+			final JettyFiles webappFiles, OutputStream outStream) throws MojoExecutionException, MojoFailureException {
+		if (!parseAsXml) {
+			InputStream inStream;
 			try {
-				writeFileIfChanged(IOUtil.toByteArray(inStream));
+				inStream = new FileInputStream(template.getTemplateFile());
 			} catch (IOException e) {
 				throw new MojoExecutionException(
-						"Cannot write Jetty configuration template: " + e.getMessage(), e);
+						"Cannot read Jetty configuration template: " + e.getMessage(), e);
+			}
+			try {
+				filterInputToOutputStream(inStream, outStream);
+			} finally {
+				IOUtil.close(inStream);
 			}
+			return;
 		}
-	}
-
-	private void writeFileIfChanged(byte[] newConfigFileContent) throws MojoExecutionException {
-		File configurationFile = new File(confTargetDir
-				+ System.getProperty("file.separator")
-				+ contextXmlTemplate.getName());
+		
+		StreamPipe pipe = new StreamPipe(new StreamPipe.Producer() {
 
+			public void produce(OutputStream outputStream) throws Exception {
+				writeTemplate(template, classpathFiles, webappFiles, outputStream);
+			}
+		}, "jetty-conf-injection " + template.getTemplateFile().getName());
+		boolean produced = false;
 		try {
-			if (!configurationFile.exists()) {
-				File parentDir = configurationFile.getParentFile();
-				if (parentDir != null) {
-					parentDir.mkdirs();
-				}
-
-				configurationFile.createNewFile();
-
+			filterInputToOutputStream(pipe.getInputStream(), outStream);
+			
+			// the filtered content is not complete if the injection failed
+			pipe.join();
+			produced = true;
+		} catch (MojoExecutionException e) {
+			throw e;
+		} catch (MojoFailureException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new MojoExecutionException(
+					"Cannot generate Jetty configuration: " + e.getMessage(), e);
+		} finally {
+			if (!produced) {
+				pipe.cancel();
 			}
-			FileInputStream inputStreamOld = new FileInputStream(
-					configurationFile);
-			ByteArrayInputStream inputStreamNew = new ByteArrayInputStream(
-					newConfigFileContent);
-
-			if (!IOUtil.contentEquals(inputStreamOld, inputStreamNew)) {
-				OutputStream confFileOutputStream = new FileOutputStream(
-						configurationFile);
-				IOUtil.copy(newConfigFileContent, confFileOutputStream);
-				confFileOutputStream.flush();
-				confFileOutputStream.close();
-
+		}
+	}
+	
+	private ContextXmlWriter createContextXmlWriter(ContextTemplate template, JettyFiles classpathFiles,
+			JettyFiles webappFiles) throws MojoExecutionException {
+		ContextXmlWriter writer;
+		if (ENGINE_STREAM.equals(injectionEngine)) {
+			writer = new StreamingJettyConfWriter(classpathFiles, webappFiles, report);
+		} else if (ENGINE_DOM.equals(injectionEngine)) {
+			writer = new JettyConfWriter(classpathFiles, webappFiles, report);
+		} else if (ENGINE_COMPILED.equals(injectionEngine)) {
+			writer = new CompiledJettyConfWriter(classpathFiles, webappFiles, report,
+					template.getCompiledTemplateFile(), pluginVersion);
+		} else {
+			throw new MojoExecutionException("Unknown injection engine '"
+					+ injectionEngine + "', use '" + ENGINE_DOM + "', '"
+					+ ENGINE_STREAM + "' or '" + ENGINE_COMPILED + "'");
+		}
+		writer.setInjectionTargets(InjectionTarget.forExpression(classpathInjectionXPath),
+				InjectionTarget.forExpression(webAppInjectionXPath));
+		writer.setPathBases(createPathBases(classpathFiles, webappFiles));
+		return writer;
+	}
+	
+	private void commitFileIfChanged(ChangeDetectingOutputStream outStream, File configurationFile) throws MojoExecutionException {
+		long start = report.start();
+		try {
+			if (outStream.commit()) {
+				report.count(ExecutionReport.FILES_WRITTEN, 1);
 				getLog().info(
 						"New context xml file written at: " + configurationFile);
+				refresh(configurationFile);
 			} else {
+				report.count(ExecutionReport.FILES_PRESERVED, 1);
 				getLog().info(
 						"Preserving old context xml file at: "
 								+ configurationFile);
 			}
-			inputStreamNew.close();
-			inputStreamOld.close();
+			report.stop(ExecutionReport.WRITE_IF_CHANGED, start);
+			report.count(ExecutionReport.BYTES_OUT, outStream.getCount());
 		} catch (IOException e) {
 			throw new MojoExecutionException(
 					"Cannot write Jetty configuration: " + e.getMessage(), e);
@@ -178,6 +793,7 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 	private void filterInputToOutputStream(InputStream inStream, OutputStream outStream)
 			throws MojoExecutionException, MojoFailureException {
 
+		long start = report.start();
 		MavenResourcesExecution mavenResourcesExecution = new MavenResourcesExecution(
 				null, null, project, encoding, null, Collections.EMPTY_LIST,
 				session);
@@ -185,6 +801,7 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 		try {
 			createDefaultFilteringReader(mavenResourcesExecution, inStream,
 					outStream);
+			report.stop(ExecutionReport.FILTERING, start);
 		} catch (IOException e) {
 			throw new MojoExecutionException(
 					"IO error occured when filtering context xml file: "
@@ -234,10 +851,13 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 		mavenResourcesExecution.setEscapeWindowsPaths( escapeWindowsPaths );
 		initializeDelimiters(mavenResourcesExecution);
 		
-		List<FilterWrapper> filterWrappers = new ArrayList<FilterWrapper>();
-		filterWrappers.addAll(mavenFileFilter
-				.getDefaultFilterWrappers(mavenResourcesExecution));
-		mavenResourcesExecution.setFilterWrappers(filterWrappers);
+		TokenFilter tokenFilter = createTokenFilter(mavenResourcesExecution);
+		if (tokenFilter == null) {
+			List<FilterWrapper> filterWrappers = new ArrayList<FilterWrapper>();
+			filterWrappers.addAll(mavenFileFilter
+					.getDefaultFilterWrappers(mavenResourcesExecution));
+			mavenResourcesExecution.setFilterWrappers(filterWrappers);
+		}
 
 		if (mavenResourcesExecution.getEncoding() == null
 				|| mavenResourcesExecution.getEncoding().length() < 1) {
@@ -251,12 +871,94 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 							+ "' encoding to copy filtered resources.");
 		}
 
-		filter(mavenResourcesExecution, inStream, outStream);
+		filter(mavenResourcesExecution, tokenFilter, inStream, outStream);
+
+	}
+	
+	/**
+	 * Creates the single pass filter if the {@link #filteringEngine} is
+	 * {@code single-pass} and the execution needs nothing the filter doesn't
+	 * support: filter files, an escape string, multi-line tokens or empty
+	 * delimiters.<br>
+	 * The properties are looked up the same way as by the maven-filtering:
+	 * the system and then the user properties override the project
+	 * properties, the rest is
+	 * resolved against the project (with or without the {@code project.}
+	 * and {@code pom.} prefixes), the session and the settings.
+	 * 
+	 * @param mavenResourcesExecution
+	 * @return the filter or {@code null} if the maven-filtering is used
+	 * @throws MavenFilteringException
+	 *             if the {@link #filteringEngine} is unknown
+	 */
+	@SuppressWarnings("unchecked")
+	private TokenFilter createTokenFilter(MavenResourcesExecution mavenResourcesExecution) throws MavenFilteringException {
+		if (FILTERING_ENGINE_MAVEN.equals(filteringEngine)) {
+			return null;
+		}
+		if (!FILTERING_ENGINE_SINGLE_PASS.equals(filteringEngine)) {
+			throw new MavenFilteringException("Unknown filtering engine '" + filteringEngine + "', use either '"
+					+ FILTERING_ENGINE_MAVEN + "' or '" + FILTERING_ENGINE_SINGLE_PASS + "'");
+		}
+		if (mavenResourcesExecution.getEscapeString() != null
+				|| mavenResourcesExecution.isSupportMultiLineFiltering()
+				|| (mavenResourcesExecution.getFileFilters() != null && !mavenResourcesExecution.getFileFilters().isEmpty())
+				|| !TokenFilter.isSupported(mavenResourcesExecution.getDelimiters())) {
+			getLog().debug("Single pass filtering doesn't support the execution, using maven-filtering");
+			return null;
+		}
+		
+		final Map<String, String> properties = filteringProperties != null ? filteringProperties
+				: collectFilteringProperties();
+		
+		final List<ValueSource> valueSources = new ArrayList<ValueSource>();
+		valueSources.add(new PrefixedObjectValueSource(mavenResourcesExecution.getProjectStartExpressions(), project, true));
+		if (session != null) {
+			valueSources.add(new PrefixedObjectValueSource("session", session));
+			if (session.getSettings() != null) {
+				valueSources.add(new PrefixedObjectValueSource("settings", session.getSettings()));
+				valueSources.add(new SingleResponseValueSource("localRepository", session.getSettings().getLocalRepository()));
+			}
+		}
+		
+		return new TokenFilter(mavenResourcesExecution.getDelimiters(), new TokenFilter.ValueLookup() {
+
+			public String lookup(String expression) {
+				String value = properties.get(expression);
+				if (value != null) {
+					return value;
+				}
+				for (ValueSource valueSource : valueSources) {
+					Object object = valueSource.getValue(expression);
+					if (object != null) {
+						return String.valueOf(object);
+					}
+				}
+				return null;
+			}
+		}, escapeWindowsPaths);
+	}
 
+	/**
+	 * @return the project properties overridden by the system and the user
+	 *         properties
+	 */
+	private Map<String, String> collectFilteringProperties() {
+		Properties executionProperties = new Properties();
+		executionProperties.putAll(project.getProperties());
+		if (session != null) {
+			executionProperties.putAll(session.getSystemProperties());
+			executionProperties.putAll(session.getUserProperties());
+		}
+		Map<String, String> properties = new HashMap<String, String>();
+		for (String name : executionProperties.stringPropertyNames()) {
+			properties.put(name, executionProperties.getProperty(name));
+		}
+		return Collections.unmodifiableMap(properties);
 	}
 
 	@SuppressWarnings("unchecked")
-	private void filter(MavenResourcesExecution mavenResourcesExecution,
+	private void filter(MavenResourcesExecution mavenResourcesExecution, TokenFilter tokenFilter,
 			InputStream inStream, OutputStream outStream) throws IOException {
 
 		String encoding = mavenResourcesExecution.getEncoding();
@@ -265,21 +967,26 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 		Writer fileWriter = null;
 		if (encoding == null || encoding.length() < 1) {
 			fileReader = new BufferedReader(new InputStreamReader(inStream));
-			fileWriter = new OutputStreamWriter(outStream);
+			fileWriter = new BufferedWriter(new OutputStreamWriter(outStream));
 		} else {
 			fileReader = new BufferedReader(new InputStreamReader(inStream,
 					encoding));
 
-			fileWriter = new OutputStreamWriter(outStream, encoding);
+			fileWriter = new BufferedWriter(new OutputStreamWriter(outStream, encoding));
 		}
 
-		Reader reader = fileReader;
-		for (FilterWrapper wrapper : (List<FilterWrapper>) mavenResourcesExecution
-				.getFilterWrappers()) {
-			reader = wrapper.getReader(reader);
+		if (tokenFilter != null) {
+			tokenFilter.filter(fileReader, fileWriter);
+		} else {
+			Reader reader = fileReader;
+			for (FilterWrapper wrapper : (List<FilterWrapper>) mavenResourcesExecution
+					.getFilterWrappers()) {
+				reader = wrapper.getReader(reader);
+			}
+	
+			IOUtil.copy(reader, fileWriter);
 		}
-
-		IOUtil.copy(reader, fileWriter);
+		fileWriter.flush();
 
 	}
 
@@ -298,12 +1005,6 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
 	 */
 	protected String encoding;
 
-	/**
-	 * @parameter default-value="${session}"
-	 * @readonly
-	 * @required
-	 */
-	protected MavenSession session;
 	
 	/**
      * <p>
@@ -346,6 +1047,34 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
      */
     protected boolean filtering;
     
+    static final String FILTERING_ENGINE_MAVEN = "maven";
+    
+    static final String FILTERING_ENGINE_SINGLE_PASS = "single-pass";
+    
+    /**
+     * How the template is filtered if {@link #filtering} is {@code true}.
+     * <ul>
+     * <li>{@code maven} - the filter wrappers of the maven-filtering, the same as in 'maven-resources-plugin'</li>
+     * <li>{@code single-pass} - the tokens of all the {@link #delimiters} are recognized in a single pass over the
+     * template and each expression is looked up only once; values and the {@link #escapeWindowsPaths} are the same
+     * as with {@code maven}. Unlike {@code maven}, a token right after the first character of a begin token is
+     * replaced too, e.g. {@code $${a}} becomes {@code $} followed by the value of {@code a}, begin tokens of
+     * several characters other than <code>${</code> (e.g. {@code [[*]]}) are recognized and tokens inside an unknown
+     * token are kept, e.g. <code>@ ${a} @</code>. Executions needing filter files, escape strings or multi-line
+     * tokens fall back to {@code maven}.</li>
+     * </ul>
+     * 
+     * @since 1.1
+     * @parameter expression="${jetty-conf.filteringEngine}" default-value="maven"
+     */
+    protected String filteringEngine = FILTERING_ENGINE_MAVEN;
+    
+    /**
+     * Properties looked up by the single pass filtering, collected once per
+     * execution before the templates are rendered.
+     */
+    private Map<String, String> filteringProperties;
+    
     /**
      * Whether to parse the xml template and inject dynamic values (ie. web app resources and classpath entries) into the dom.<p>
      * If set to false, maven properties:
@@ -357,4 +1086,50 @@ public class JettyConfCopyMojo extends AbstractJettyConfMojo {
      * @parameter expression="${parseAsXml}" default-value="true"
      */
     protected boolean parseAsXml;
+    
+    static final String ENGINE_DOM = "dom";
+    
+    static final String ENGINE_STREAM = "stream";
+    
+    static final String ENGINE_COMPILED = "compiled";
+    
+    /**
+     * How the dynamic values are injected into the template if {@link #parseAsXml} is {@code true}.
+     * <ul>
+     * <li>{@code dom} - the template is parsed into a DOM, altered and serialized back</li>
+     * <li>{@code stream} - the template is streamed and the values are spliced into the target elements;
+     * the original formatting of the template is preserved and the memory consumption doesn't depend on the template size</li>
+     * <li>{@code compiled} - like {@code stream}, but the template is scanned only once into static segments and slots
+     * which are stored next to the generated file; until the template or the plugin version changes, the entries are just
+     * concatenated with the stored segments</li>
+     * </ul>
+     * 
+     * @since 1.1
+     * @parameter expression="${injectionEngine}" default-value="dom"
+     */
+    protected String injectionEngine;
+    
+    /**
+     * XPath expression of the element where classpath entries are injected.
+     * Defaults to the {@code extraClasspath} setter.<p>
+     * Expressions of the {@code //Element[@attribute="value"]} form are
+     * located together in a single pass over the template; the {@code stream}
+     * engine supports only these. Other expressions are compiled once and
+     * reused by all the templates.
+     * 
+     * @since 1.1
+     * @parameter expression="${jetty-conf.classpathInjectionXPath}"
+     */
+    protected String classpathInjectionXPath = InjectionTarget.CLASSPATH.getExpression();
+    
+    /**
+     * XPath expression of the element where web app resources are injected.
+     * Defaults to the first {@code java.lang.String} array of the template.
+     * Use e.g. {@code //Set[@name="baseResource"]//Array} to be more specific.
+     * 
+     * @since 1.1
+     * @parameter expression="${jetty-conf.webAppInjectionXPath}"
+     * @see #classpathInjectionXPath
+     */
+    protected String webAppInjectionXPath = InjectionTarget.WEBAPP.getExpression();
 }
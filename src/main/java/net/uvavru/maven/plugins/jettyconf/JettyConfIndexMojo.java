@@ -0,0 +1,276 @@
+package net.uvavru.maven.plugins.jettyconf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.uvavru.maven.plugins.jettyconf.internals.AbstractJettyConfMojo;
+import net.uvavru.maven.plugins.jettyconf.internals.AnnotationScanner;
+import net.uvavru.maven.plugins.jettyconf.internals.AtomicFileWriter;
+import net.uvavru.maven.plugins.jettyconf.internals.ContextEntries;
+import net.uvavru.maven.plugins.jettyconf.internals.ExecutionReport;
+import net.uvavru.maven.plugins.jettyconf.internals.ParallelProcessor;
+import net.uvavru.maven.plugins.jettyconf.types.AnnotationIndexEntry;
+import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+import net.uvavru.maven.plugins.jettyconf.types.FileStampCache;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * @goal index-annotations
+ * @requiresDependencyResolution test
+ * @threadSafe
+ * @description Scans the classpath entries and web app resources for servlet annotations,
+ * ServletContainerInitializer services and web fragments and creates properties
+ * <ul><li>{@code jetty.conf-plugin.annotationIndex}</li> and <li>{@code jetty.conf-plugin.webInfIncludeJarPattern}</li></ul>
+ */
+public class JettyConfIndexMojo extends AbstractJettyConfMojo {
+
+	/**
+	 * Index of the servlet container relevant content of the classpath
+	 * entries. Scan results of jars are cached next to the index and reused
+	 * until the jar changes.<br>
+	 * The index location is available as the
+	 * {@code jetty.conf-plugin.annotationIndex} property. The
+	 * {@code jetty.conf-plugin.webInfIncludeJarPattern} property matches only
+	 * the jars with relevant content (servlet annotations, web fragments,
+	 * {@code META-INF/resources} and tag library descriptors) or all the jars
+	 * if there is any {@code ServletContainerInitializer}; setting it as the
+	 * {@code org.eclipse.jetty.server.webapp.WebInfIncludeJarPattern} context
+	 * attribute lets Jetty skip scanning of all the other jars.<br>
+	 * The index itself is informative only, Jetty doesn't read it.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.annotationIndex}"
+	 *            default-value="${project.build.directory}/jetty-conf-annotations.xml"
+	 */
+	protected File annotationIndex;
+
+	public void execute() throws MojoExecutionException {
+		startReport();
+		try {
+			String jarPattern = unchangedJarPattern();
+			if (jarPattern != null) {
+				getLog().info("No relevant change in the incremental build, annotation index is up to date");
+			} else {
+				jarPattern = jarPattern(scanAndWriteIndex());
+				if (buildContext != null) {
+					buildContext.setValue(getJarPatternKey(), jarPattern);
+				}
+			}
+			
+			project.getProperties().setProperty("jetty.conf-plugin.annotationIndex",
+					annotationIndex.getAbsolutePath());
+			project.getProperties().setProperty("jetty.conf-plugin.webInfIncludeJarPattern", jarPattern);
+			getLog().info(
+					"Generated properties 'jetty.conf-plugin.annotationIndex' and 'jetty.conf-plugin.webInfIncludeJarPattern'");
+			buildContextExecuted();
+		} finally {
+			finishReport();
+		}
+	}
+	
+	/**
+	 * The incremental build of the IDE needs no scan if it changed neither the
+	 * dependency set nor the project output directory nor the web app sources
+	 * and the index exists.
+	 * 
+	 * @return jar pattern of the previous execution or {@code null} if the
+	 *         entries need to be scanned
+	 */
+	private String unchangedJarPattern() {
+		// the web app sources may contain WEB-INF/lib jars
+		List<File> inputs = Collections.singletonList(new File(project.getBasedir(), "src/main/webapp"));
+		if (!isUnchangedInBuildContext(inputs) || !annotationIndex.isFile()) {
+			return null;
+		}
+		return (String) buildContext.getValue(getJarPatternKey());
+	}
+	
+	/**
+	 * @return key of the jar pattern remembered in the {@link #buildContext}
+	 */
+	private String getJarPatternKey() {
+		String executionId = mojoExecution == null ? "" : mojoExecution.getExecutionId();
+		return "jetty-conf.webInfIncludeJarPattern." + executionId;
+	}
+	
+	/**
+	 * Scans the classpath entries and web app resources and writes the index.
+	 * 
+	 * @return scanned entries
+	 * @throws MojoExecutionException
+	 */
+	private List<AnnotationIndexEntry> scanAndWriteIndex() throws MojoExecutionException {
+		ArtifactCandidates artifactCandidates = jettyArtifactCandidates();
+		
+		List<File> entries = new ArrayList<File>(filterAndTranslateClasspathEntries(artifactCandidates));
+		for (File webAppFile : filterAndTranslateWebAppArtifacts(artifactCandidates)) {
+			addWebAppEntries(webAppFile, entries);
+		}
+		
+		File cacheFile = new File(annotationIndex.getParentFile(), "." + annotationIndex.getName() + ".cache");
+		FileStampCache cache = FileStampCache.load(cacheFile);
+		
+		List<AnnotationIndexEntry> index = scan(entries, cache);
+		
+		writeIndex(index);
+		try {
+			cache.store(cacheFile);
+		} catch (IOException e) {
+			getLog().warn("Cannot store annotation scan cache: " + e.getMessage());
+		}
+		getLog().debug("Classpath entries scanned, " + cache);
+		return index;
+	}
+	
+	/**
+	 * Adds {@code WEB-INF/classes} and {@code WEB-INF/lib} jars of the web app
+	 * resource.
+	 * 
+	 * @param webAppFile
+	 * @param entries
+	 */
+	private void addWebAppEntries(File webAppFile, List<File> entries) {
+		File classes = new File(webAppFile, "WEB-INF/classes");
+		if (classes.isDirectory()) {
+			entries.add(classes);
+		}
+		File[] jars = new File(webAppFile, "WEB-INF/lib").listFiles();
+		if (jars != null) {
+			Arrays.sort(jars);
+			for (File jar : jars) {
+				if (jar.getName().endsWith(".jar")) {
+					entries.add(jar);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Scans the entries concurrently. Jars found in the cache are not scanned,
+	 * directories are always scanned since their timestamp doesn't reflect
+	 * changes deep in the tree.
+	 * 
+	 * @param entries
+	 * @param cache
+	 * @return scanned entries in the order of the classpath
+	 * @throws MojoExecutionException
+	 */
+	private List<AnnotationIndexEntry> scan(List<File> entries, final FileStampCache cache) throws MojoExecutionException {
+		final AnnotationScanner scanner = new AnnotationScanner();
+		
+		long start = report.start();
+		List<AnnotationIndexEntry> scannedEntries = new ParallelProcessor(parallelism).process(entries, new ParallelProcessor.Task<File, AnnotationIndexEntry>() {
+
+			public AnnotationIndexEntry process(File file) throws MojoExecutionException {
+				if (!file.exists()) {
+					getLog().debug("Not scanning nonexistent classpath entry: " + file);
+					return null;
+				}
+				boolean cacheable = file.isFile();
+				if (cacheable) {
+					String value = cache.get(file);
+					AnnotationIndexEntry entry = value == null ? null : AnnotationIndexEntry.fromCacheValue(file, value);
+					if (entry != null) {
+						return entry;
+					}
+				}
+				try {
+					AnnotationIndexEntry entry = scanner.scan(file);
+					report.count(ExecutionReport.SCANNED_ENTRIES, 1);
+					if (cacheable) {
+						cache.put(file, entry.toCacheValue());
+					}
+					return entry;
+				} catch (IOException e) {
+					throw new MojoExecutionException("Cannot scan classpath entry: " + file, e);
+				}
+			}
+		});
+		report.stop(ExecutionReport.SCAN, start);
+		
+		List<AnnotationIndexEntry> index = new ArrayList<AnnotationIndexEntry>();
+		for (AnnotationIndexEntry entry : scannedEntries) {
+			if (entry != null) {
+				index.add(entry);
+			}
+		}
+		return index;
+	}
+	
+	private void writeIndex(List<AnnotationIndexEntry> index) throws MojoExecutionException {
+		int relevant = 0;
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<annotation-index entries=\"").append(index.size()).append("\">\n");
+		for (AnnotationIndexEntry entry : index) {
+			if (!entry.isRelevant()) {
+				continue;
+			}
+			++relevant;
+			xml.append("  <entry uri=\"").append(attribute(ContextEntries.webAppResource(entry.getFile())))
+					.append("\" webFragment=\"").append(entry.hasWebFragment())
+					.append("\" webResources=\"").append(entry.hasWebResources())
+					.append("\" tagLibraries=\"").append(entry.hasTagLibraries()).append("\">\n");
+			for (String initializer : entry.getInitializers()) {
+				xml.append("    <initializer class=\"").append(attribute(initializer)).append("\"/>\n");
+			}
+			for (String[] annotatedClass : entry.getAnnotatedClasses()) {
+				xml.append("    <annotated class=\"").append(attribute(annotatedClass[0]))
+						.append("\" annotation=\"").append(annotatedClass[1]).append("\"/>\n");
+			}
+			xml.append("  </entry>\n");
+		}
+		xml.append("</annotation-index>\n");
+		
+		try {
+			if (AtomicFileWriter.writeIfChanged(annotationIndex, xml.toString().getBytes("UTF-8"))) {
+				getLog().info("Annotation index of " + index.size() + " classpath entries (" + relevant
+						+ " to be scanned by the container) written at: " + annotationIndex);
+				refresh(annotationIndex);
+			} else {
+				getLog().info("Preserving old annotation index at: " + annotationIndex);
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot write annotation index: " + e.getMessage(), e);
+		}
+	}
+	
+	private static String attribute(String value) {
+		return ContextEntries.escapeXml(value).replace("\"", "&quot;");
+	}
+	
+	/**
+	 * A {@code ServletContainerInitializer} may declare {@code @HandlesTypes}
+	 * and the container then searches all the jars for the classes of those
+	 * types which can be plain classes in jars with no other relevant
+	 * content. All the jars are matched in such a case.
+	 * 
+	 * @param index
+	 * @return pattern matching jars which need to be scanned by the container
+	 */
+	private String jarPattern(List<AnnotationIndexEntry> index) {
+		for (AnnotationIndexEntry entry : index) {
+			if (!entry.getInitializers().isEmpty()) {
+				getLog().info("ServletContainerInitializer found in " + entry.getFile()
+						+ ", all the jars are to be scanned by the container");
+				return ".*";
+			}
+		}
+		StringBuilder pattern = new StringBuilder();
+		for (AnnotationIndexEntry entry : index) {
+			if (entry.isRelevant() && entry.getFile().isFile()) {
+				if (pattern.length() > 0) {
+					pattern.append('|');
+				}
+				pattern.append(".*/").append(Pattern.quote(entry.getFile().getName()));
+			}
+		}
+		// no jar at all
+		return pattern.length() == 0 ? "^$" : pattern.toString();
+	}
+}
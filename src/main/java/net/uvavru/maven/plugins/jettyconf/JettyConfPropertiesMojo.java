@@ -8,16 +8,20 @@ import org.apache.maven.plugin.MojoExecutionException;
 /**
  * @goal generate-properties
  * @requiresDependencyResolution test
+ * @threadSafe
  * @description Creates properties <ul><li>{@code jetty.conf-plugin.classpath}</li> and <li>{@code jetty.conf-plugin.webapp}</li></ul>
  */
 public class JettyConfPropertiesMojo extends AbstractJettyConfMojo {
 
 	public void execute() throws MojoExecutionException {
-
-		ArtifactCandidates artifactCandidates = jettyArtifactCandidates();
-		
-		initializeJettyConfProperties(artifactCandidates);
-
+		startReport();
+		try {
+			ArtifactCandidates artifactCandidates = jettyArtifactCandidates();
+			
+			initializeJettyConfProperties(artifactCandidates);
+		} finally {
+			finishReport();
+		}
 	}
 
 }
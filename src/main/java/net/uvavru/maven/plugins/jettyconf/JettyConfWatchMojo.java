@@ -0,0 +1,337 @@
+package net.uvavru.maven.plugins.jettyconf;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+import net.uvavru.maven.plugins.jettyconf.types.ContextTemplate;
+import net.uvavru.maven.plugins.jettyconf.types.JettyFiles;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * @goal watch
+ * @requiresDependencyResolution test
+ * @threadSafe
+ * @description Generates the context xml files and keeps regenerating them whenever the templates,
+ * the project output directory or the web app resources change
+ */
+public class JettyConfWatchMojo extends JettyConfCopyMojo {
+
+	/**
+	 * How long to wait for more changes after the first one before the
+	 * context files are regenerated (in milliseconds).
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.watchDebounce}" default-value="200"
+	 */
+	protected long watchDebounce;
+
+	private List<ContextTemplate> templates;
+	private JettyFiles classpathFiles;
+	private JettyFiles webappFiles;
+
+	private WatchService watchService;
+	private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+	private final Set<Path> watchedTrees = new HashSet<Path>();
+	private final Set<Path> templateDirectories = new HashSet<Path>();
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		// artifacts are resolved only once, the dependencies don't change
+		// while watching
+		startReport();
+		try {
+			templates = collectTemplates();
+			resolveArtifacts();
+			for (ContextTemplate template : templates) {
+				generate(template, classpathFiles, webappFiles);
+			}
+		} finally {
+			finishReport();
+		}
+
+		try {
+			// a single watch service for the whole session, changes made
+			// while regenerating are queued and picked up by the next round
+			watchService = FileSystems.getDefault().newWatchService();
+			try {
+				registerWatchedDirectories();
+				while (!Thread.currentThread().isInterrupted()) {
+					Set<Path> changes = awaitChanges();
+
+					// each round gets its own report
+					startReport();
+					try {
+						regenerate(changes);
+					} finally {
+						finishReport();
+					}
+					// new templates or web app resources
+					registerWatchedDirectories();
+				}
+			} finally {
+				watchService.close();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot watch for changes: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Filters and translates the artifacts, each call starts with a fresh
+	 * path resolution cache so that new or removed directories are noticed.
+	 * 
+	 * @return {@code true} if the resolved files changed
+	 * @throws MojoExecutionException
+	 */
+	private boolean resolveArtifacts() throws MojoExecutionException {
+		ArtifactCandidates artifactCandidates = jettyArtifactCandidates();
+		if (parseAsXml) {
+			JettyFiles oldClasspathFiles = classpathFiles;
+			JettyFiles oldWebappFiles = webappFiles;
+			classpathFiles = filterAndTranslateClasspathArtifacts(artifactCandidates);
+			webappFiles = filterAndTranslateWebAppArtifacts(artifactCandidates);
+			return !classpathFiles.equals(oldClasspathFiles) || !webappFiles.equals(oldWebappFiles);
+		} else if (filtering) {
+			String webapp = project.getProperties().getProperty("jetty.conf-plugin.webapp");
+			String classpath = project.getProperties().getProperty("jetty.conf-plugin.classpath");
+			initializeJettyConfProperties(artifactCandidates);
+			return webapp == null
+					|| !webapp.equals(project.getProperties().getProperty("jetty.conf-plugin.webapp"))
+					|| !classpath.equals(project.getProperties().getProperty("jetty.conf-plugin.classpath"));
+		}
+		return false;
+	}
+
+	/**
+	 * Re-runs only the steps affected by the changed paths.
+	 * 
+	 * @param changes
+	 * @throws MojoExecutionException
+	 * @throws MojoFailureException
+	 */
+	private void regenerate(Set<Path> changes) throws MojoExecutionException, MojoFailureException {
+		Set<File> templateFiles = new HashSet<File>();
+		for (ContextTemplate template : templates) {
+			templateFiles.add(template.getTemplateFile().getAbsoluteFile());
+		}
+
+		Set<ContextTemplate> changedTemplates = new HashSet<ContextTemplate>();
+		boolean resourcesChanged = false;
+		boolean templateSetChanged = false;
+		for (Path change : changes) {
+			File changedFile = change.toFile().getAbsoluteFile();
+			ContextTemplate template = findTemplate(changedFile);
+			if (template != null) {
+				changedTemplates.add(template);
+			} else if (isInTemplateDirectory(changedFile)) {
+				templateSetChanged = true;
+			} else {
+				resourcesChanged = true;
+			}
+		}
+
+		if (templateSetChanged) {
+			List<ContextTemplate> oldTemplates = templates;
+			templates = collectTemplates();
+			for (ContextTemplate template : templates) {
+				if (!templateFiles.contains(template.getTemplateFile().getAbsoluteFile())) {
+					changedTemplates.add(template);
+				}
+			}
+			getLog().debug("Templates changed from " + oldTemplates + " to " + templates);
+		}
+
+		if (resourcesChanged && resolveArtifacts()) {
+			// the dynamic content changed, all the templates are affected
+			changedTemplates.addAll(templates);
+		}
+
+		for (ContextTemplate template : templates) {
+			if (changedTemplates.contains(template)) {
+				generate(template, classpathFiles, webappFiles);
+			}
+		}
+	}
+
+	private ContextTemplate findTemplate(File file) {
+		for (ContextTemplate template : templates) {
+			if (template.getTemplateFile().getAbsoluteFile().equals(file)) {
+				return template;
+			}
+		}
+		return null;
+	}
+
+	private boolean isInTemplateDirectory(File file) {
+		File templateDirectory = getContextXmlTemplateDirectory();
+		return templateDirectory != null
+				&& file.toPath().startsWith(templateDirectory.getAbsoluteFile().toPath());
+	}
+
+	/**
+	 * Blocks until something changes and the changes settle down. Created
+	 * directories are registered, keys of deleted directories are cancelled.
+	 * 
+	 * @return changed paths
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private Set<Path> awaitChanges() throws IOException, InterruptedException {
+		Set<Path> changes = new HashSet<Path>();
+		// ignored events don't start a round
+		while (changes.isEmpty()) {
+			WatchKey key = watchService.take();
+			while (key != null) {
+				Path directory = keys.get(key);
+				if (directory != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW) {
+							changes.add(directory);
+						} else {
+							Path changed = directory.resolve((Path) event.context());
+							if (!isWatched(changed)) {
+								continue;
+							}
+							changes.add(changed);
+							if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+								registerTree(changed);
+							} else if (event.kind() == ENTRY_DELETE) {
+								cancelTree(changed);
+							}
+						}
+					}
+				}
+				if (!key.reset()) {
+					// the directory is gone
+					keys.remove(key);
+				}
+
+				// debounce the burst of events
+				key = watchService.poll(watchDebounce, TimeUnit.MILLISECONDS);
+			}
+		}
+		getLog().debug("Changed: " + changes);
+		return changes;
+	}
+
+	/**
+	 * Parents of the trees are watched only to notice the trees being
+	 * (re)created, other changes there (e.g. files written by this plugin)
+	 * are ignored.
+	 * 
+	 * @param path
+	 * @return whether the path is in a watched tree or a template directory
+	 */
+	private boolean isWatched(Path path) {
+		if (templateDirectories.contains(path.getParent())) {
+			return true;
+		}
+		for (Path root : watchedTrees) {
+			if (path.startsWith(root)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Registers the templates, the output directory and the web app resource
+	 * directories which are not watched yet. Directories created or deleted
+	 * later are registered or cancelled as their events arrive.
+	 */
+	private void registerWatchedDirectories() throws IOException {
+		for (ContextTemplate template : templates) {
+			File templateDirectory = template.getTemplateFile().getAbsoluteFile().getParentFile();
+			templateDirectories.add(templateDirectory.toPath());
+			register(templateDirectory);
+		}
+		if (getContextXmlTemplateDirectory() != null) {
+			watchTree(getContextXmlTemplateDirectory());
+		}
+
+		File outputDirectory = new File(getProject().getBuild().getOutputDirectory());
+		watchTree(outputDirectory);
+
+		if (webappFiles != null) {
+			for (File webappFile : webappFiles) {
+				watchTree(webappFile);
+			}
+		}
+		getLog().info("Watching " + keys.size() + " directories for changes");
+	}
+
+	/**
+	 * Registers the parent and the whole tree of the directory unless already
+	 * done.
+	 * 
+	 * @param directory
+	 * @throws IOException
+	 */
+	private void watchTree(File directory) throws IOException {
+		Path root = directory.getAbsoluteFile().toPath();
+		if (watchedTrees.add(root)) {
+			// the parent notices when the directory is (re)created
+			register(root.toFile().getParentFile());
+			registerTree(root);
+		}
+	}
+
+	private void register(File directory) throws IOException {
+		if (directory != null && directory.isDirectory()) {
+			// registering a directory again returns the same key
+			Path path = directory.toPath();
+			keys.put(path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), path);
+		}
+	}
+
+	private void registerTree(Path root) throws IOException {
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				register(dir.toFile());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void cancelTree(Path root) {
+		Iterator<Map.Entry<WatchKey, Path>> entries = keys.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<WatchKey, Path> entry = entries.next();
+			if (entry.getValue().startsWith(root)) {
+				entry.getKey().cancel();
+				entries.remove();
+			}
+		}
+	}
+}
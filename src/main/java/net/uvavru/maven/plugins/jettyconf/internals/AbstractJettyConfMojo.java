@@ -2,21 +2,33 @@ package net.uvavru.maven.plugins.jettyconf.internals;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+import net.uvavru.maven.plugins.jettyconf.types.FileStampCache;
 import net.uvavru.maven.plugins.jettyconf.types.JettyFiles;
+import net.uvavru.maven.plugins.jettyconf.types.PathResolutionCache;
+import net.uvavru.maven.plugins.jettyconf.types.ResolvedPath;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 public abstract class AbstractJettyConfMojo extends AbstractMojo {
 
@@ -93,6 +105,124 @@ public abstract class AbstractJettyConfMojo extends AbstractMojo {
 	 */
 	protected String webAppMatchArtifactPattern = "[^:]*:[^:]*:war:[^:]*";
 
+	/**
+	 * Whether to emit the classpath entries and web app resources relative to
+	 * base directories they share (see {@link #pathBases}) instead of
+	 * repeating the absolute paths. Each base is declared once at the
+	 * beginning of the context file as
+	 * {@code <New id="jetty.conf-plugin.base.N" class="java.lang.String">}
+	 * and the entries refer to it by {@code <Ref refid="jetty.conf-plugin.base.N"/>}.
+	 * With filtering, the declarations are available as the
+	 * {@code jetty.conf-plugin.bases} property which must then be placed right
+	 * into the {@code Configure} element of the template.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.baseRelativePaths}" default-value="false"
+	 */
+	protected boolean baseRelativePaths;
+	
+	/**
+	 * Comma separated list of base directories for the
+	 * {@link #baseRelativePaths}. Defaults to the local repository and the
+	 * reactor root directory. Only bases shared by at least two entries are
+	 * declared.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.pathBases}" default-value=""
+	 */
+	protected String pathBases = "";
+	
+	/**
+	 * @param classpathFiles
+	 * @param webAppFiles
+	 * @return bases of the entries or {@code null} if absolute entries are
+	 *         emitted
+	 */
+	protected PathBases createPathBases(List<File> classpathFiles, List<File> webAppFiles) {
+		if (!baseRelativePaths) {
+			return null;
+		}
+		List<File> candidates = new ArrayList<File>();
+		if (pathBases != null && pathBases.trim().length() > 0) {
+			for (String base : pathBases.split(",")) {
+				if (base.trim().length() > 0) {
+					candidates.add(new File(base.trim()));
+				}
+			}
+		} else if (session != null) {
+			if (session.getLocalRepository() != null) {
+				candidates.add(new File(session.getLocalRepository().getBasedir()));
+			}
+			if (session.getExecutionRootDirectory() != null) {
+				candidates.add(new File(session.getExecutionRootDirectory()));
+			}
+		}
+		List<List<File>> entryLists = new ArrayList<List<File>>();
+		entryLists.add(classpathFiles);
+		entryLists.add(webAppFiles);
+		PathBases bases = PathBases.compute(candidates, entryLists);
+		if (getLog().isDebugEnabled()) {
+			getLog().debug("Entries emitted relative to bases: " + bases.getBases());
+		}
+		return bases;
+	}
+
+	/**
+	 * Comma separated list of artifacts considered for the classpath in the
+	 * form of 'groupId:artifactId[:type[:classifier]]' where each field may
+	 * contain '*' and '?' wildcards, e.g. 'org.example*:*:jar'. Replaces the
+	 * {@link #classpathMatchArtifactPattern} if set. Matching the fields
+	 * directly is cheaper than a regular expression.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.classpathIncludes}" default-value=""
+	 */
+	protected String classpathIncludes = "";
+
+	/**
+	 * Comma separated list of artifacts never considered for the classpath,
+	 * in the same form as {@link #classpathIncludes}.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.classpathExcludes}" default-value=""
+	 */
+	protected String classpathExcludes = "";
+
+	/**
+	 * Comma separated list of artifacts considered for the web app resources
+	 * in the same form as {@link #classpathIncludes}. Replaces the
+	 * {@link #webAppMatchArtifactPattern} if set.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.webAppIncludes}" default-value=""
+	 */
+	protected String webAppIncludes = "";
+
+	/**
+	 * Comma separated list of artifacts never considered for the web app
+	 * resources, in the same form as {@link #classpathIncludes}.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.webAppExcludes}" default-value=""
+	 */
+	protected String webAppExcludes = "";
+	
+	protected ArtifactMatcher createClasspathMatcher() throws MojoExecutionException {
+		return createMatcher(classpathMatchArtifactPattern, classpathIncludes, classpathExcludes);
+	}
+	
+	protected ArtifactMatcher createWebAppMatcher() throws MojoExecutionException {
+		return createMatcher(webAppMatchArtifactPattern, webAppIncludes, webAppExcludes);
+	}
+	
+	private static ArtifactMatcher createMatcher(String pattern, String includes, String excludes) throws MojoExecutionException {
+		try {
+			return ArtifactMatcher.compile(pattern, includes, excludes);
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException("Invalid artifact matching configuration: " + e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Comma Separated list of regexp patterns indicating how classpath
 	 * resources paths should be translated into.
@@ -102,31 +232,108 @@ public abstract class AbstractJettyConfMojo extends AbstractMojo {
 	 * @optional
 	 */
 	protected String classpathReplacements = "";
+	
+	public static final String CLASSPATH_MODE_ENTRIES = "entries";
+	
+	public static final String CLASSPATH_MODE_PATHING_JAR = "pathing-jar";
+	
+	/**
+	 * How the classpath is passed to Jetty.
+	 * <ul>
+	 * <li>{@code entries} - every classpath entry is listed in the context file (or the property)</li>
+	 * <li>{@code pathing-jar} - the entries are listed in the {@code Class-Path} manifest attribute of
+	 * the {@link #pathingJar} and only the jar itself is listed; the size of the context file then doesn't
+	 * depend on the number of dependencies</li>
+	 * </ul>
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.classpathMode}" default-value="entries"
+	 */
+	protected String classpathMode = CLASSPATH_MODE_ENTRIES;
+	
+	/**
+	 * Manifest-only jar listing the classpath entries if {@link #classpathMode} is {@code pathing-jar}.
+	 * It's rewritten only when the classpath changes.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.pathingJar}"
+	 *            default-value="${project.build.directory}/jetty-conf-classpath.jar"
+	 */
+	protected File pathingJar;
+	
+	/**
+	 * Whether to drop classpath entries with exactly the same content as an
+	 * entry earlier on the classpath (e.g. the same jar installed under
+	 * different coordinates). Files are compared by their size and checksum
+	 * which are cached in {@link #classpathHashCache} until the file changes;
+	 * directories are never dropped.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.deduplicateClasspath}" default-value="false"
+	 */
+	protected boolean deduplicateClasspath = false;
+	
+	/**
+	 * Cache of the classpath entry checksums used by {@link #deduplicateClasspath}.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.classpathHashCache}"
+	 *            default-value="${project.build.directory}/.jetty-conf-classpath-hashes.cache"
+	 */
+	protected File classpathHashCache;
 
 	/**
 	 * Filters artifacts according to the properties
 	 * 
 	 * @param artifacts
-	 * @return
+	 * @param matcher
+	 * @param processor
+	 * @return matched artifacts in the order of the candidates
+	 * @throws MojoExecutionException
 	 */
-	private Set<Artifact> filterArtifacts(List<Artifact> artifacts,
-			Pattern pattern) {
-		Set<Artifact> artifactsFiltered = new HashSet<Artifact>();
+	protected Set<Artifact> filterArtifacts(final ArtifactCandidates artifacts,
+			final ArtifactMatcher matcher, ParallelProcessor processor) throws MojoExecutionException {
+		final boolean debug = getLog().isDebugEnabled();
+		if (debug) {
+			getLog().debug("Matching artifacts with " + matcher);
+		}
+		long start = report.start();
+		
+		List<Boolean> matches = processor.process(artifacts, new ParallelProcessor.Task<Artifact, Boolean>() {
+
+			public Boolean process(Artifact artifact) {
+				String artifactDescriptor = null;
+				if (debug || matcher.isDescriptorNeeded()) {
+					artifactDescriptor = artifacts.getDescriptor(artifact);
+				}
+				if (debug) {
+					getLog().debug(
+							"resolved: " + artifact + ", path: " + artifact.getFile());
+					getLog().debug("Matching against descriptor: " + artifactDescriptor);
+				}
+
+				boolean matches = matcher.matchesIncludes(artifact, artifactDescriptor);
+				if (matches && matcher.matchesExcludes(artifact)) {
+					if (debug) {
+						getLog().debug("excluded: " + artifactDescriptor);
+					}
+					matches = false;
+				}
+				if (matches && debug) {
+					getLog().debug("matched: " + artifactDescriptor);
+				}
+				return matches;
+			}
+		});
 		
-		getLog().debug("Matching artifacts with pattern: " + pattern);
-		for (Artifact artifact : artifacts) {
-			getLog().debug(
-					"resolved: " + artifact + ", path: " + artifact.getFile());
-			String artifactDescriptor = String.format("%s:%s:%s:%s",
-					artifact.getGroupId(), artifact.getArtifactId(),
-					artifact.getType(), artifact.getClassifier());
-			getLog().debug("Matching against descriptor: " + artifactDescriptor);
-
-			if (pattern.matcher(artifactDescriptor).matches()) {
-				getLog().debug("matched: " + artifactDescriptor);
-				artifactsFiltered.add(artifact);
+		Set<Artifact> artifactsFiltered = new LinkedHashSet<Artifact>();
+		for (int i = 0; i < matches.size(); ++i) {
+			if (matches.get(i)) {
+				artifactsFiltered.add(artifacts.get(i));
 			}
 		}
+		report.stop(ExecutionReport.FILTER, start);
+		report.count(ExecutionReport.MATCHED_ARTIFACTS, artifactsFiltered.size());
 		return artifactsFiltered;
 	}
 
@@ -197,148 +404,397 @@ public abstract class AbstractJettyConfMojo extends AbstractMojo {
 	protected String webAppDirNonexistentAlternateReplacement = null;
 	
 	
+	/**
+	 * Whether to process the artifacts concurrently.<br>
+	 * Matching, canonicalization, translation and directory checks of the
+	 * artifacts are mostly blocked on the filesystem and so large dependency
+	 * graphs benefit from processing them in parallel. The result is the same
+	 * as in the sequential mode.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.parallel}" default-value="false"
+	 */
+	protected boolean parallel;
+	
+	/**
+	 * Number of concurrent tasks if {@link #parallel} is {@code true}.
+	 * Defaults to the number of available processors.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.parallelism}" default-value="0"
+	 */
+	protected int parallelism;
+	
+	/**
+	 * @return processor according to the {@link #parallel} configuration
+	 */
+	protected ParallelProcessor createParallelProcessor() {
+		return new ParallelProcessor(parallel ? parallelism : 1);
+	}
+	
 	/**
 	 * Filters and translate artifacts according to plugin configuration.
 	 * 
 	 * @param artifacts
-	 * @return
+	 * @return classpath entries as passed to Jetty according to the {@link #classpathMode}
 	 * @throws MojoExecutionException
 	 */
 	public JettyFiles filterAndTranslateClasspathArtifacts(ArtifactCandidates artifacts) throws MojoExecutionException {
-		return filterAndTranslateArtifacts(artifacts, Pattern.compile(classpathMatchArtifactPattern), classpathPatterns, classpathReplacements);
+		JettyFiles classpathFiles = filterAndTranslateClasspathEntries(artifacts);
+		classpathEntriesTranslated(classpathFiles);
+		
+		if (CLASSPATH_MODE_PATHING_JAR.equals(classpathMode)) {
+			return writePathingJar(classpathFiles);
+		} else if (!CLASSPATH_MODE_ENTRIES.equals(classpathMode)) {
+			throw new MojoExecutionException("Unknown classpath mode '"
+					+ classpathMode + "', use either '" + CLASSPATH_MODE_ENTRIES
+					+ "' or '" + CLASSPATH_MODE_PATHING_JAR + "'");
+		}
+		return classpathFiles;
+	}
+	
+	/**
+	 * Filters and translate artifacts according to plugin configuration.
+	 * 
+	 * @param artifacts
+	 * @return all the classpath entries regardless of the {@link #classpathMode}
+	 * @throws MojoExecutionException
+	 */
+	protected JettyFiles filterAndTranslateClasspathEntries(ArtifactCandidates artifacts) throws MojoExecutionException {
+		JettyFiles classpathFiles = filterAndTranslateArtifacts(artifacts, createClasspathMatcher(), classpathPatterns, classpathReplacements, createParallelProcessor());
+		
+		getLog().debug("Classpath translated, " + artifacts.getPathResolutionCache());
+		if (getTranslationCache() != null) {
+			getLog().debug("Classpath translated, " + getTranslationCache());
+		}
+		if (deduplicateClasspath) {
+			classpathFiles = deduplicate(classpathFiles);
+		}
+		return classpathFiles;
+	}
+	
+	/**
+	 * Drops files with the same content as a file earlier on the classpath.
+	 * Checksums are computed concurrently and reused from the
+	 * {@link #classpathHashCache}; equal checksums are confirmed by comparing
+	 * the content.
+	 * 
+	 * @param classpathFiles
+	 * @return classpath entries in the original order without duplicates
+	 * @throws MojoExecutionException
+	 */
+	private JettyFiles deduplicate(JettyFiles classpathFiles) throws MojoExecutionException {
+		long start = report.start();
+		final FileStampCache cache = FileStampCache.load(classpathHashCache);
+		
+		List<String> hashes = createParallelProcessor().process(classpathFiles, new ParallelProcessor.Task<File, String>() {
+
+			public String process(File file) throws MojoExecutionException {
+				if (!file.isFile()) {
+					// directories and translated paths which don't exist here
+					return null;
+				}
+				String hash = cache.get(file);
+				if (hash == null) {
+					try {
+						hash = ContentHash.compute(file);
+					} catch (IOException e) {
+						throw new MojoExecutionException("Cannot read classpath entry: " + file, e);
+					}
+					cache.put(file, hash);
+				}
+				return hash;
+			}
+		});
+		
+		JettyFiles deduplicated = new JettyFiles();
+		Map<String, List<File>> kept = new HashMap<String, List<File>>();
+		for (int i = 0; i < classpathFiles.size(); ++i) {
+			File file = classpathFiles.get(i);
+			String hash = hashes.get(i);
+			if (hash != null) {
+				List<File> sameHash = kept.get(hash);
+				if (sameHash == null) {
+					sameHash = new ArrayList<File>(1);
+					kept.put(hash, sameHash);
+				}
+				File original = findEqual(file, sameHash);
+				if (original != null) {
+					getLog().info("Dropping classpath entry " + file + ", it has the same content as " + original);
+					report.count(ExecutionReport.DUPLICATE_ENTRIES, 1);
+					continue;
+				}
+				sameHash.add(file);
+			}
+			deduplicated.add(file);
+		}
+		
+		try {
+			cache.store(classpathHashCache);
+		} catch (IOException e) {
+			getLog().warn("Cannot store classpath checksum cache: " + e.getMessage());
+		}
+		getLog().debug("Classpath deduplicated, " + cache);
+		report.stop(ExecutionReport.DEDUPLICATE, start);
+		return deduplicated;
+	}
+	
+	private static File findEqual(File file, List<File> candidates) throws MojoExecutionException {
+		for (File candidate : candidates) {
+			try {
+				if (candidate.equals(file) || ContentHash.contentEquals(candidate, file)) {
+					return candidate;
+				}
+			} catch (IOException e) {
+				throw new MojoExecutionException("Cannot compare classpath entries " + candidate + " and " + file, e);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Called with all the classpath entries before the {@link #classpathMode}
+	 * is applied. Does nothing by default.
+	 * 
+	 * @param classpathFiles
+	 * @throws MojoExecutionException
+	 */
+	protected void classpathEntriesTranslated(JettyFiles classpathFiles) throws MojoExecutionException {
+	}
+	
+	/**
+	 * Writes the {@link #pathingJar} if the classpath changed.
+	 * 
+	 * @param classpathFiles
+	 * @return the pathing jar as the only classpath entry
+	 * @throws MojoExecutionException
+	 */
+	private JettyFiles writePathingJar(JettyFiles classpathFiles) throws MojoExecutionException {
+		try {
+			if (PathingJar.writeIfChanged(pathingJar, classpathFiles)) {
+				getLog().info("Pathing jar with " + classpathFiles.size() + " classpath entries written at: " + pathingJar);
+				refresh(pathingJar);
+			} else {
+				getLog().debug("Preserving old pathing jar at: " + pathingJar);
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot write pathing jar: " + e.getMessage(), e);
+		}
+		
+		JettyFiles files = new JettyFiles();
+		files.add(pathingJar.getAbsoluteFile());
+		return files;
+	}
+	
+	/**
+	 * @return whether the output of a previous execution other than the
+	 *         context files is missing
+	 */
+	protected boolean isClasspathOutputMissing() {
+		return CLASSPATH_MODE_PATHING_JAR.equals(classpathMode) && !pathingJar.isFile();
 	}
 	
 	public JettyFiles filterAndTranslateWebAppArtifacts(ArtifactCandidates artifacts) throws MojoExecutionException {
-		JettyFiles webAppFiles = filterAndTranslateArtifacts(artifacts, Pattern.compile(webAppMatchArtifactPattern), webAppPatterns, webAppReplacements);
+		ParallelProcessor processor = createParallelProcessor();
+		JettyFiles webAppFiles = filterAndTranslateArtifacts(artifacts, createWebAppMatcher(), webAppPatterns, webAppReplacements, processor);
 		
+		// the configuration must stay intact, the translation runs repeatedly
+		// when watching
 		Pattern webAppAlternativePattern = null;
+		String webAppAlternateReplacement = webAppDirNonexistentAlternateReplacement;
 		if (webAppDirNonexistentAlternatePattern != null) {
-			if (webAppDirNonexistentAlternateReplacement == null) {
+			if (webAppAlternateReplacement == null) {
 				getLog().warn(String.format("Not using %s as web app alternate pattern because 'replacement' is null", webAppDirNonexistentAlternatePattern));
 			} else {
 				webAppAlternativePattern = Pattern.compile(webAppDirNonexistentAlternatePattern);
+				if (webappDirNonexistentTreatAsWindowsPath) {
+					webAppAlternateReplacement = webAppAlternateReplacement.replace("\\", "\\\\");
+				}
 			}
 		}
-		if (webappDirNonexistentTreatAsWindowsPath) {
-			webAppDirNonexistentAlternateReplacement = webAppDirNonexistentAlternateReplacement.replace("\\", "\\\\");
-		}
-		for (ListIterator<File> fileIt = webAppFiles.listIterator(); fileIt.hasNext(); ) {
-			File file = fileIt.next();
-			try {
-				if (webAppAlternativePattern != null && !file.isDirectory() && webAppResourcesAsDirsOnly) {
-					if (webAppAlternativePattern.matcher(file.getCanonicalPath()).matches()) {
-						String alternateFilePath = webAppAlternativePattern.matcher(file.getCanonicalPath()).replaceAll(webAppDirNonexistentAlternateReplacement);
-						File alternateFile = new File(alternateFilePath);
-						if (alternateFile.exists() && alternateFile.isDirectory()) {
-							getLog().debug(String.format("transforming '%s' into '%s'", file.getCanonicalPath(), alternateFile.getCanonicalPath()));
-							fileIt.set(alternateFile);
-						} else {
-							getLog().debug("File " + alternateFilePath + " doesn't exist .. skipping alternate path");
-						}
-					} else {
-						getLog().debug("File " + file.getCanonicalPath() + " doesn't match web alternate pattern.");
+		final Pattern alternativePattern = webAppAlternativePattern;
+		final String alternateReplacement = webAppAlternateReplacement;
+		final PathResolutionCache pathCache = artifacts.getPathResolutionCache();
+		
+		long start = report.start();
+		int fileSystemCalls = pathCache.getFileSystemCalls();
+		List<File> resolvedFiles = processor.process(webAppFiles, new ParallelProcessor.Task<File, File>() {
+
+			public File process(File file) throws MojoExecutionException {
+				File webAppFile = resolveAlternateWebAppFile(file, alternativePattern, alternateReplacement, pathCache);
+				try {
+					if (webAppResourcesAsDirsOnly && !pathCache.resolve(webAppFile).isDirectory()) {
+						getLog().warn(
+								"Not adding artifact file: '" + webAppFile
+										+ "' into webapps because it's not a directory");
+						return null;
 					}
-				} else {
-					getLog().debug("Condition for: " + file + " not met..");
+				} catch (IOException e) {
+					throw new MojoExecutionException("Cannot resolve web app resource: " + webAppFile.getName(), e);
 				}
-			} catch (IOException e) {
-				throw new MojoExecutionException("Cannot generate alternate path for: " + file.getName(), e);
+				return webAppFile;
 			}
-		}
+		});
 		
-		for (Iterator<File> fileIt = webAppFiles.iterator(); fileIt.hasNext(); ) {
-			File file = fileIt.next();
-			if (!file.isDirectory() && webAppResourcesAsDirsOnly) {
-				fileIt.remove();
-				getLog().warn(
-						"Not adding artifact file: '" + file
-								+ "' into webapps because it's not a directory");
+		webAppFiles.clear();
+		for (File file : resolvedFiles) {
+			if (file != null) {
+				webAppFiles.add(file);
 			}
 		}
+		report.stop(ExecutionReport.WEBAPP_ALTERNATE, start);
+		report.count(ExecutionReport.FILESYSTEM_CALLS, pathCache.getFileSystemCalls() - fileSystemCalls);
+		
+		getLog().debug("Web app resources translated, " + pathCache);
+		if (getTranslationCache() != null) {
+			getLog().debug("Web app resources translated, " + getTranslationCache());
+		}
 		
 		return webAppFiles;
 	}
 	
-	private  JettyFiles filterAndTranslateArtifacts(List<Artifact> artifacts, Pattern pattern, String patterns, String replacements) throws MojoExecutionException {
-		Set<Artifact> filteredArtifacts = filterArtifacts(artifacts, pattern
-				);
+	/**
+	 * Finds an alternate directory for a web app resource which is not a directory.
+	 * 
+	 * @param file
+	 * @param webAppAlternativePattern
+	 * @param alternateReplacement
+	 * @param pathCache
+	 * @return the alternate directory or the {@code file} itself
+	 * @throws MojoExecutionException
+	 */
+	private File resolveAlternateWebAppFile(File file, Pattern webAppAlternativePattern, String alternateReplacement, PathResolutionCache pathCache) throws MojoExecutionException {
+		try {
+			ResolvedPath resolvedFile = null;
+			if (webAppAlternativePattern != null && webAppResourcesAsDirsOnly) {
+				resolvedFile = pathCache.resolve(file);
+			}
+			if (resolvedFile != null && !resolvedFile.isDirectory()) {
+				Matcher matcher = webAppAlternativePattern.matcher(resolvedFile.getCanonicalPath());
+				if (matcher.matches()) {
+					matcher.reset();
+					String alternateFilePath = matcher.replaceAll(alternateReplacement);
+					File alternateFile = new File(alternateFilePath);
+					ResolvedPath resolvedAlternateFile = pathCache.resolve(alternateFile);
+					if (resolvedAlternateFile.exists() && resolvedAlternateFile.isDirectory()) {
+						getLog().debug(String.format("transforming '%s' into '%s'", resolvedFile.getCanonicalPath(), resolvedAlternateFile.getCanonicalPath()));
+						return alternateFile;
+					} else {
+						getLog().debug("File " + alternateFilePath + " doesn't exist .. skipping alternate path");
+					}
+				} else {
+					getLog().debug("File " + resolvedFile.getCanonicalPath() + " doesn't match web alternate pattern.");
+				}
+			} else {
+				getLog().debug("Condition for: " + file + " not met..");
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot generate alternate path for: " + file.getName(), e);
+		}
+		return file;
+	}
+	
+	private  JettyFiles filterAndTranslateArtifacts(ArtifactCandidates artifacts, ArtifactMatcher matcher, String patterns, String replacements, ParallelProcessor processor) throws MojoExecutionException {
+		Set<Artifact> filteredArtifacts = filterArtifacts(artifacts, matcher, processor);
 		
 		JettyFiles translatedFiles = translatePathsAndReduceArtifacts(filteredArtifacts,
-				patterns, replacements);
+				patterns, replacements, artifacts.getPathResolutionCache(), processor);
 		
 		return translatedFiles;
 	}
 	
-	private void addToFilesAsCanonical(Set<Artifact> artifacts, List<File> files)
-			throws MojoExecutionException {
-		for (Artifact artifact : artifacts) {
-			try {
-				files.add(artifact.getFile().getCanonicalFile());
-			} catch (IOException e) {
-				throw new MojoExecutionException(
-						"Cannot generate path for an artifact: " + artifact, e);
-			}
-		}
-	}
-
 	/**
 	 * Translate paths and reduces artifacts set if matched.
 	 * 
 	 * @param artifacts
 	 * @param patterns
 	 * @param replacements
+	 * @param pathCache
+	 * @param processor
 	 * @return
 	 * @throws MojoExecutionException
 	 */
-	private JettyFiles translatePathsAndReduceArtifacts(Set<Artifact> artifacts, String patterns,
-			String replacements) throws MojoExecutionException {
+	protected JettyFiles translatePathsAndReduceArtifacts(Set<Artifact> artifacts, final String patterns,
+			final String replacements, final PathResolutionCache pathCache, ParallelProcessor processor) throws MojoExecutionException {
 		JettyFiles files = new JettyFiles();
 
 		if (patterns == null | replacements == null) {
 			return files;
 		}
 
-		Artifact artifact = null;
+		long start = report.start();
+		int fileSystemCalls = pathCache.getFileSystemCalls();
+		final PathTranslationTable table = PathTranslationTable.compile(patterns, replacements);
+		final TranslationCache cache = getTranslationCache();
+		
+		List<Artifact> artifactList = new ArrayList<Artifact>(artifacts);
+		List<TranslatedPath> translatedPaths = processor.process(artifactList, new ParallelProcessor.Task<Artifact, TranslatedPath>() {
 
-		try {
-			String[] patternStrings = patterns.split(",");
-			String[] replacementsStrings = replacements.split(",");
-			for (int i = 0; i < patternStrings.length
-					&& i < replacementsStrings.length; ++i) {
-				Pattern pattern = Pattern.compile(patternStrings[i]);
-
-				Iterator<Artifact> it = artifacts.iterator();
-				while (it.hasNext()) {
-					artifact = it.next();
-
-					String path = artifact.getFile().getCanonicalPath();
-
-					File file = translatePath(path, pattern,
-							replacementsStrings[i]);
-					if (file != null) {
-						files.add(file);
-						it.remove();
+			public TranslatedPath process(Artifact artifact) throws MojoExecutionException {
+				if (cache != null) {
+					TranslatedPath translatedPath = cache.getTranslatedPath(patterns, replacements, artifact.getFile());
+					if (translatedPath != null) {
+						return translatedPath;
 					}
 				}
+				try {
+					ResolvedPath resolvedPath = pathCache.resolve(artifact.getFile());
+					String path = resolvedPath.getCanonicalPath();
+					
+					TranslatedPath translatedPath;
+					int index = table.indexOf(path);
+					if (index >= 0) {
+						translatedPath = new TranslatedPath(index, table.translate(index, path));
+					} else {
+						translatedPath = new TranslatedPath(-1, resolvedPath.getCanonicalFile());
+					}
+					if (cache != null) {
+						cache.putTranslatedPath(patterns, replacements, artifact.getFile(), translatedPath);
+					}
+					return translatedPath;
+				} catch (IOException e) {
+					throw new MojoExecutionException(
+							"Cannot generate path for an artifact: " + artifact, e);
+				}
 			}
-			
-			// adds the rest of artifacts to the files
-			addToFilesAsCanonical(artifacts, files);
-
-		} catch (IOException e) {
-			throw new MojoExecutionException(
-					"Cannot generate path for an artifact: " + artifact, e);
+		});
+		
+		// files translated by a pattern are grouped by the pattern index and
+		// the rest of artifacts goes last
+		List<List<File>> translatedFiles = new ArrayList<List<File>>(table.size());
+		for (int i = 0; i < table.size(); ++i) {
+			translatedFiles.add(null);
 		}
-		return files;
-	}
-
-	private File translatePath(String path, Pattern pattern, String replacement) {
-		if (pattern.matcher(path).matches()) {
-			return new File(pattern.matcher(path).replaceAll(replacement));
+		List<File> untranslatedFiles = new ArrayList<File>();
+		for (int i = 0; i < translatedPaths.size(); ++i) {
+			TranslatedPath translatedPath = translatedPaths.get(i);
+			if (translatedPath.getIndex() >= 0) {
+				List<File> patternFiles = translatedFiles.get(translatedPath.getIndex());
+				if (patternFiles == null) {
+					patternFiles = new ArrayList<File>();
+					translatedFiles.set(translatedPath.getIndex(), patternFiles);
+				}
+				patternFiles.add(translatedPath.getFile());
+				artifacts.remove(artifactList.get(i));
+				report.count(ExecutionReport.TRANSLATED_PATHS, 1);
+			} else {
+				untranslatedFiles.add(translatedPath.getFile());
+			}
 		}
-		return null;
+		
+		for (List<File> patternFiles : translatedFiles) {
+			if (patternFiles != null) {
+				files.addAll(patternFiles);
+			}
+		}
+		files.addAll(untranslatedFiles);
+		
+		report.stop(ExecutionReport.TRANSLATE, start);
+		report.count(ExecutionReport.PATTERNS, table.size());
+		report.count(ExecutionReport.FILESYSTEM_CALLS, pathCache.getFileSystemCalls() - fileSystemCalls);
+		return files;
 	}
-
+	
 	/**
 	 * Returns all projects dependency artifacts.<br>
 	 * Doesn't include current project.
@@ -366,11 +822,14 @@ public abstract class AbstractJettyConfMojo extends AbstractMojo {
 	 * @return
 	 */
 	public ArtifactCandidates jettyArtifactCandidates() {
+		long start = report.start();
 		ArtifactCandidates candidates = new ArtifactCandidates();
 		
 		fetchDependencyArtifacts(candidates);
 		conditionallyAddCurrentProjectArtifact(candidates);
 		
+		report.stop(ExecutionReport.CANDIDATES, start);
+		report.count(ExecutionReport.ARTIFACTS, candidates.size());
 		return candidates;
 	}
 	
@@ -382,6 +841,179 @@ public abstract class AbstractJettyConfMojo extends AbstractMojo {
      */
     protected MavenProject project;
     
+	/**
+	 * @parameter default-value="${session}"
+	 * @readonly
+	 * @required
+	 */
+	protected MavenSession session;
+	
+	/**
+	 * Whether to share translated paths with other executions in the same reactor build.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.reactorCache}" default-value="true"
+	 */
+	protected boolean reactorCache;
+	
+	/**
+	 * @return the reactor cache or {@code null} if disabled
+	 */
+	protected TranslationCache getTranslationCache() {
+		if (!reactorCache || session == null) {
+			return null;
+		}
+		return TranslationCache.forSession(session);
+	}
+	
+	/**
+	 * Incremental build context of the IDE (m2e). On the command line every
+	 * file is considered changed and nothing needs to be refreshed.
+	 * 
+	 * @component
+	 */
+	protected BuildContext buildContext;
+	
+	/**
+	 * @return key of the dependency set remembered in the
+	 *         {@link #buildContext}
+	 */
+	private String getDependenciesKey() {
+		String executionId = mojoExecution == null ? "" : mojoExecution.getExecutionId();
+		return "jetty-conf.dependencies." + executionId;
+	}
+	
+	/**
+	 * @return ids and files of the project dependencies in the classpath
+	 *         order
+	 */
+	private String describeDependencies() {
+		StringBuilder dependencies = new StringBuilder();
+		for (Artifact artifact : project.getArtifacts()) {
+			dependencies.append(artifact.getId()).append('=').append(artifact.getFile()).append('\n');
+		}
+		return dependencies.toString();
+	}
+	
+	/**
+	 * Whether the incremental build of the IDE didn't touch anything the
+	 * execution depends on: the given inputs, the project file, the project
+	 * output directory and the dependency set remembered by
+	 * {@link #buildContextExecuted()}. Always {@code false} outside of an
+	 * incremental build.
+	 * 
+	 * @param inputs
+	 *            files or directories the execution reads
+	 * @return
+	 */
+	protected boolean isUnchangedInBuildContext(List<File> inputs) {
+		if (buildContext == null || !buildContext.isIncremental()) {
+			return false;
+		}
+		if (!describeDependencies().equals(buildContext.getValue(getDependenciesKey()))) {
+			return false;
+		}
+		if (project.getFile() != null && buildContext.hasDelta(project.getFile())) {
+			return false;
+		}
+		if (buildContext.hasDelta(new File(project.getBuild().getOutputDirectory()))) {
+			return false;
+		}
+		for (File input : inputs) {
+			if (buildContext.hasDelta(input)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Remembers the dependency set of the successful execution for
+	 * {@link #isUnchangedInBuildContext(List)}.
+	 */
+	protected void buildContextExecuted() {
+		if (buildContext != null) {
+			buildContext.setValue(getDependenciesKey(), describeDependencies());
+		}
+	}
+	
+	/**
+	 * Lets the IDE know the generated file changed.
+	 * 
+	 * @param file
+	 */
+	protected void refresh(File file) {
+		if (buildContext != null) {
+			// files are generated concurrently
+			synchronized (buildContext) {
+				buildContext.refresh(file);
+			}
+		}
+	}
+	
+	/**
+	 * Version of this plugin.
+	 * 
+	 * @parameter default-value="${plugin.version}"
+	 * @readonly
+	 */
+	protected String pluginVersion;
+	
+	/**
+	 * @parameter default-value="${mojoExecution}"
+	 * @readonly
+	 */
+	protected MojoExecution mojoExecution;
+	
+	/**
+	 * Directory where a JSON report with wall times and counters of all the
+	 * phases of the execution is stored. The report is named after the goal
+	 * and the execution id. A one line summary is always logged.
+	 * 
+	 * @since 1.1
+	 * @parameter expression="${jetty-conf.reportDirectory}"
+	 *            default-value="${project.build.directory}"
+	 */
+	protected File reportDirectory;
+	
+	/**
+	 * Timings and counters of the current execution.
+	 */
+	protected ExecutionReport report = new ExecutionReport();
+	
+	/**
+	 * Starts a new {@link #report}.
+	 */
+	protected void startReport() {
+		report = new ExecutionReport();
+	}
+	
+	/**
+	 * Logs the summary of the {@link #report} and stores it into the
+	 * {@link #reportDirectory}.
+	 */
+	protected void finishReport() {
+		report.finish();
+		String goal = mojoExecution == null ? "execution" : mojoExecution.getGoal();
+		report.describe("goal", goal);
+		if (mojoExecution != null) {
+			report.describe("executionId", mojoExecution.getExecutionId());
+		}
+		report.describe("project", project.getId());
+		report.describe("pluginVersion", pluginVersion);
+		
+		if (reportDirectory != null && mojoExecution != null) {
+			File reportFile = new File(reportDirectory, "jetty-conf-" + goal + "-"
+					+ mojoExecution.getExecutionId() + ".json");
+			try {
+				report.store(reportFile);
+			} catch (IOException e) {
+				getLog().warn("Cannot store execution report: " + e.getMessage());
+			}
+		}
+		getLog().info("Jetty conf " + goal + ": " + report.summary());
+	}
+	
 	public MavenProject getProject()
     {
         return this.project;
@@ -403,22 +1035,175 @@ public abstract class AbstractJettyConfMojo extends AbstractMojo {
 		
 		JettyFiles webappFiles = filterAndTranslateWebAppArtifacts(artifactCandidates);
 		
-		String webapp = "";
+		initializeJettyConfProperties(classpathFiles, webappFiles);
+    }
+    
+    /**
+     * Initializes the properties from already translated entries.
+     * 
+     * @param classpathFiles
+     * @param webappFiles
+     * @see #initializeJettyConfProperties(ArtifactCandidates)
+     */
+    protected void initializeJettyConfProperties(JettyFiles classpathFiles, JettyFiles webappFiles) {
+		PathBases bases = createPathBases(classpathFiles, webappFiles);
+		// without a shared base the entries stay raw, as with baseRelativePaths off
+		boolean relative = bases != null && !bases.isEmpty();
+		
+		StringBuilder webapp = new StringBuilder();
 		for (File file : webappFiles) {
-			webapp += "\n<Item>" + file.toURI() + "</Item>";
+			webapp.append("\n<Item>")
+					.append(relative ? ContextEntries.webAppResourceXml(file, bases) : ContextEntries.webAppResource(file))
+					.append("</Item>");
 		}
 		project.getProperties()
-				.setProperty("jetty.conf-plugin.webapp", webapp);
+				.setProperty("jetty.conf-plugin.webapp", webapp.toString());
 
-		String classpath = "";
-		for (File file : classpathFiles) {
-			classpath += "\n" + file.toURI() + ";";
-		}
+		String classpath = relative ? ContextEntries.classpathXml(classpathFiles, bases) : ContextEntries.classpath(classpathFiles);
 		project.getProperties()
 				.setProperty("jetty.conf-plugin.classpath", classpath);
+		
+		project.getProperties()
+				.setProperty("jetty.conf-plugin.bases", bases == null ? "" : bases.declarationsXml());
+		if (bases != null) {
+			for (int i = 0; i < bases.getBases().size(); ++i) {
+				project.getProperties().setProperty(PathBases.getId(i), bases.getBases().get(i));
+			}
+		}
 
 		getLog().info(
 				"Generated properties 'jetty.conf-plugin.classpath' and 'jetty.conf-plugin.webapp'");
     }
 
+	/**
+	 * Adds all parameters which affect the filtering and translation of
+	 * artifacts into the fingerprint.
+	 *
+	 * @param fingerprint
+	 */
+	protected void fingerprintParameters(ExecutionFingerprint fingerprint) {
+		fingerprint.add("pluginVersion", pluginVersion);
+		fingerprint.add("mockingTypes", mockingTypes);
+		fingerprint.add("useTestScope", useTestScope);
+		fingerprint.add("webAppReplacements", webAppReplacements);
+		fingerprint.add("webAppPatterns", webAppPatterns);
+		fingerprint.add("classpathPatterns", classpathPatterns);
+		fingerprint.add("classpathReplacements", classpathReplacements);
+		fingerprint.add("classpathMatchArtifactPattern", classpathMatchArtifactPattern);
+		fingerprint.add("webAppMatchArtifactPattern", webAppMatchArtifactPattern);
+		fingerprint.add("classpathIncludes", classpathIncludes);
+		fingerprint.add("classpathExcludes", classpathExcludes);
+		fingerprint.add("webAppIncludes", webAppIncludes);
+		fingerprint.add("webAppExcludes", webAppExcludes);
+		fingerprint.add("baseRelativePaths", baseRelativePaths);
+		fingerprint.add("pathBases", pathBases);
+		fingerprint.add("webAppResourcesAsDirsOnly", webAppResourcesAsDirsOnly);
+		fingerprint.add("webappDirNonexistentTreatAsWindowsPath", webappDirNonexistentTreatAsWindowsPath);
+		fingerprint.add("webAppDirNonexistentAlternatePattern", webAppDirNonexistentAlternatePattern);
+		fingerprint.add("webAppDirNonexistentAlternateReplacement", webAppDirNonexistentAlternateReplacement);
+		fingerprint.add("classpathMode", classpathMode);
+		fingerprint.add("pathingJar", pathingJar == null ? null : pathingJar.getAbsolutePath());
+		fingerprint.add("deduplicateClasspath", deduplicateClasspath);
+	}
+
+	/**
+	 * Adds coordinates, paths, timestamps and the directory flags of all the
+	 * artifact candidates into the fingerprint together with the state of the
+	 * paths they would be translated to and of the web app alternate
+	 * directories.<br>
+	 * The paths are probed as they are: nothing is canonicalized, matched,
+	 * deduplicated nor written, that's the expensive part the fingerprint is
+	 * supposed to save. The patterns are therefore applied to the absolute
+	 * rather than the canonical paths and a change hidden behind a symbolic
+	 * link is not detected.
+	 *
+	 * @param fingerprint
+	 * @param artifactCandidates
+	 */
+	protected void fingerprintArtifacts(ExecutionFingerprint fingerprint, ArtifactCandidates artifactCandidates) {
+		PathTranslationTable classpathTable = classpathPatterns == null || classpathReplacements == null ? null
+				: PathTranslationTable.compile(classpathPatterns, classpathReplacements);
+		PathTranslationTable webAppTable = webAppPatterns == null || webAppReplacements == null ? null
+				: PathTranslationTable.compile(webAppPatterns, webAppReplacements);
+		Pattern alternatePattern = null;
+		String alternateReplacement = webAppDirNonexistentAlternateReplacement;
+		if (webAppResourcesAsDirsOnly && webAppDirNonexistentAlternatePattern != null && alternateReplacement != null) {
+			alternatePattern = Pattern.compile(webAppDirNonexistentAlternatePattern);
+			if (webappDirNonexistentTreatAsWindowsPath) {
+				alternateReplacement = alternateReplacement.replace("\\", "\\\\");
+			}
+		}
+		
+		fingerprint.add("artifacts", artifactCandidates.size());
+		for (Artifact artifact : artifactCandidates) {
+			fingerprint.add("artifact", artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+					+ artifact.getVersion() + ":" + artifact.getType() + ":"
+					+ artifact.getClassifier() + ":" + artifact.getScope());
+			File file = artifact.getFile();
+			if (file == null) {
+				fingerprint.add("path", null);
+				continue;
+			}
+			String path = file.getAbsolutePath();
+			BasicFileAttributes attributes = probe(path);
+			fingerprint.add("path", path + ":" + stamp(attributes));
+			
+			if (classpathTable != null) {
+				int index = classpathTable.indexOf(path);
+				if (index >= 0) {
+					String classpathPath = classpathTable.translate(index, path).getPath();
+					fingerprint.add("classpathPath", classpathPath + ":" + stamp(probe(classpathPath)));
+				}
+			}
+			
+			String webAppPath = path;
+			BasicFileAttributes webAppAttributes = attributes;
+			if (webAppTable != null) {
+				int index = webAppTable.indexOf(path);
+				if (index >= 0) {
+					webAppPath = webAppTable.translate(index, path).getPath();
+					webAppAttributes = probe(webAppPath);
+					fingerprint.add("webAppPath", webAppPath + ":" + stamp(webAppAttributes));
+				}
+			}
+			if (alternatePattern != null && (webAppAttributes == null || !webAppAttributes.isDirectory())) {
+				Matcher matcher = alternatePattern.matcher(webAppPath);
+				if (matcher.matches()) {
+					matcher.reset();
+					String alternatePath = matcher.replaceAll(alternateReplacement);
+					fingerprint.add("alternatePath", alternatePath + ":" + stamp(probe(alternatePath)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param path
+	 * @return attributes of the file or {@code null} if it doesn't exist
+	 */
+	private static BasicFileAttributes probe(String path) {
+		try {
+			return Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null;
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param attributes
+	 * @return state of the file, the content of a directory doesn't change
+	 *         the entries
+	 */
+	private static String stamp(BasicFileAttributes attributes) {
+		if (attributes == null) {
+			return "missing";
+		}
+		if (attributes.isDirectory()) {
+			return "directory";
+		}
+		return "file:" + attributes.lastModifiedTime().toMillis();
+	}
+
 }
@@ -0,0 +1,279 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.uvavru.maven.plugins.jettyconf.types.AnnotationIndexEntry;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Finds content of classpath entries (jars or directories) the servlet
+ * container would scan for: classes with servlet annotations,
+ * {@code ServletContainerInitializer} services, web fragments, static
+ * resources in {@code META-INF/resources} and tag library descriptors.<br>
+ *
+ * Classes are not loaded nor fully parsed, only their constant pools are
+ * searched for the annotation descriptors.
+ *
+ * @author stepan
+ *
+ */
+public class AnnotationScanner {
+
+	static final String[] ANNOTATIONS = { "WebServlet", "WebFilter", "WebListener",
+			"MultipartConfig", "ServletSecurity", "HandlesTypes" };
+
+	static final String[] ANNOTATION_PACKAGES = { "javax.servlet.annotation", "jakarta.servlet.annotation" };
+
+	static final String[] INITIALIZER_SERVICES = {
+			"META-INF/services/javax.servlet.ServletContainerInitializer",
+			"META-INF/services/jakarta.servlet.ServletContainerInitializer" };
+
+	static final String WEB_FRAGMENT = "META-INF/web-fragment.xml";
+
+	static final String WEB_RESOURCES = "META-INF/resources/";
+
+	private static final int CONSTANT_UTF8 = 1;
+
+	/**
+	 * Descriptors of the annotations as they appear in the constant pool.
+	 */
+	private static final byte[][] DESCRIPTORS;
+
+	private static final String[] DESCRIPTOR_NAMES;
+
+	static {
+		DESCRIPTORS = new byte[ANNOTATIONS.length * ANNOTATION_PACKAGES.length][];
+		DESCRIPTOR_NAMES = new String[DESCRIPTORS.length];
+		int i = 0;
+		for (String annotationPackage : ANNOTATION_PACKAGES) {
+			for (String annotation : ANNOTATIONS) {
+				String name = annotationPackage + "." + annotation;
+				DESCRIPTORS[i] = ("L" + name.replace('.', '/') + ";").getBytes();
+				DESCRIPTOR_NAMES[i] = name;
+				++i;
+			}
+		}
+	}
+
+	/**
+	 * Scans a jar or a directory.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public AnnotationIndexEntry scan(File file) throws IOException {
+		AnnotationIndexEntry entry = new AnnotationIndexEntry(file);
+		if (file.isDirectory()) {
+			scanDirectory(file, "", entry);
+		} else if (file.isFile()) {
+			scanJar(file, entry);
+		}
+		return entry;
+	}
+
+	private void scanJar(File file, AnnotationIndexEntry entry) throws IOException {
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+			while (zipEntries.hasMoreElements()) {
+				ZipEntry zipEntry = zipEntries.nextElement();
+				if (zipEntry.isDirectory()) {
+					continue;
+				}
+				String name = zipEntry.getName();
+				scanName(name, entry);
+				if (isScanned(name)) {
+					InputStream inputStream = zipFile.getInputStream(zipEntry);
+					try {
+						scanResource(name, inputStream, entry);
+					} finally {
+						IOUtil.close(inputStream);
+					}
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private void scanDirectory(File directory, String path, AnnotationIndexEntry entry) throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = path + file.getName();
+			if (file.isDirectory()) {
+				scanDirectory(file, name + "/", entry);
+				continue;
+			}
+			scanName(name, entry);
+			if (isScanned(name)) {
+				InputStream inputStream = new FileInputStream(file);
+				try {
+					scanResource(name, inputStream, entry);
+				} finally {
+					IOUtil.close(inputStream);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the content recognized by the name only.
+	 *
+	 * @param name
+	 * @param entry
+	 */
+	private static void scanName(String name, AnnotationIndexEntry entry) {
+		if (name.startsWith(WEB_RESOURCES)) {
+			entry.setWebResources(true);
+		} else if (name.startsWith("META-INF/") && name.endsWith(".tld")) {
+			entry.setTagLibraries(true);
+		}
+	}
+
+	private static boolean isScanned(String name) {
+		if (name.endsWith(".class")) {
+			// multi-release and module descriptors are not scanned by the
+			// container
+			return !name.startsWith("META-INF/") && !name.endsWith("module-info.class");
+		}
+		if (WEB_FRAGMENT.equals(name)) {
+			return true;
+		}
+		for (String service : INITIALIZER_SERVICES) {
+			if (service.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void scanResource(String name, InputStream inputStream, AnnotationIndexEntry entry) throws IOException {
+		if (WEB_FRAGMENT.equals(name)) {
+			entry.setWebFragment(true);
+		} else if (name.endsWith(".class")) {
+			String annotation = findAnnotation(IOUtil.toByteArray(inputStream));
+			if (annotation != null) {
+				String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+				entry.addAnnotatedClass(className, annotation);
+			}
+		} else {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int comment = line.indexOf('#');
+				if (comment >= 0) {
+					line = line.substring(0, comment);
+				}
+				line = line.trim();
+				if (line.length() > 0 && !entry.getInitializers().contains(line)) {
+					entry.getInitializers().add(line);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Searches the constant pool of the class for a servlet annotation
+	 * descriptor.
+	 *
+	 * @param classFile
+	 * @return name of the first annotation found or {@code null}
+	 */
+	static String findAnnotation(byte[] classFile) {
+		if (classFile.length < 10 || readInt(classFile, 0) != 0xCAFEBABE) {
+			return null;
+		}
+		int count = readUnsignedShort(classFile, 8);
+		int position = 10;
+		for (int index = 1; index < count; ++index) {
+			if (position >= classFile.length) {
+				return null;
+			}
+			int tag = classFile[position] & 0xff;
+			switch (tag) {
+			case CONSTANT_UTF8:
+				if (position + 3 > classFile.length) {
+					return null;
+				}
+				int length = readUnsignedShort(classFile, position + 1);
+				String annotation = matchDescriptor(classFile, position + 3, length);
+				if (annotation != null) {
+					return annotation;
+				}
+				position += 3 + length;
+				break;
+			case 3: // integer
+			case 4: // float
+			case 9: // field reference
+			case 10: // method reference
+			case 11: // interface method reference
+			case 12: // name and type
+			case 17: // dynamic
+			case 18: // invoke dynamic
+				position += 5;
+				break;
+			case 5: // long
+			case 6: // double
+				position += 9;
+				// takes two entries
+				++index;
+				break;
+			case 7: // class
+			case 8: // string
+			case 16: // method type
+			case 19: // module
+			case 20: // package
+				position += 3;
+				break;
+			case 15: // method handle
+				position += 4;
+				break;
+			default:
+				// unknown class file format
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private static String matchDescriptor(byte[] classFile, int offset, int length) {
+		if (offset + length > classFile.length) {
+			return null;
+		}
+		for (int i = 0; i < DESCRIPTORS.length; ++i) {
+			byte[] descriptor = DESCRIPTORS[i];
+			if (descriptor.length != length) {
+				continue;
+			}
+			int j = 0;
+			while (j < length && descriptor[j] == classFile[offset + j]) {
+				++j;
+			}
+			if (j == length) {
+				return DESCRIPTOR_NAMES[i];
+			}
+		}
+		return null;
+	}
+
+	private static int readUnsignedShort(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return (readUnsignedShort(bytes, offset) << 16) | readUnsignedShort(bytes, offset + 2);
+	}
+}
@@ -0,0 +1,354 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Decides which artifacts are considered for the classpath or the web app
+ * resources.<br>
+ *
+ * Artifacts are matched by include and exclude rules of the form
+ * {@code groupId:artifactId[:type[:classifier]]} where each field is a glob
+ * ({@code *} and {@code ?}) and missing fields match anything. Rules are
+ * evaluated against the artifact fields directly, exact, prefix and suffix
+ * globs don't even scan the whole field. A missing field (usually the
+ * classifier) is matched as an empty one.<br>
+ *
+ * Without include rules the artifacts are matched by the regular expression
+ * over the {@code groupId:artifactId:type:classifier} descriptor instead. The
+ * usual expressions consisting of literal fields and {@code [^:]*} wildcards
+ * only are turned into rules as well; the rest needs the descriptor (see
+ * {@link #isDescriptorNeeded()}).<br>
+ *
+ * Matchers are immutable and cached per configuration.
+ *
+ * @author stepan
+ *
+ */
+public class ArtifactMatcher {
+
+	private static final ConcurrentMap<String, ArtifactMatcher> MATCHERS = new ConcurrentHashMap<String, ArtifactMatcher>();
+
+	private static final String ANY_FIELD_REGEX = "[^:]*";
+
+	private static final String ANY_FIELD = "\u0000";
+
+	private static final int FIELDS = 4;
+
+	private final Pattern pattern;
+	private final List<Rule> includes;
+	private final List<Rule> excludes;
+
+	/**
+	 * @param pattern
+	 *            regular expression used when there are no include rules
+	 * @param includes
+	 *            comma separated include rules, may be empty
+	 * @param excludes
+	 *            comma separated exclude rules, may be empty
+	 * @return
+	 */
+	public static ArtifactMatcher compile(String pattern, String includes, String excludes) {
+		String key = pattern + '\u0000' + includes + '\u0000' + excludes;
+		ArtifactMatcher matcher = MATCHERS.get(key);
+		if (matcher == null) {
+			matcher = new ArtifactMatcher(pattern, includes, excludes);
+			ArtifactMatcher previous = MATCHERS.putIfAbsent(key, matcher);
+			if (previous != null) {
+				matcher = previous;
+			}
+		}
+		return matcher;
+	}
+
+	private ArtifactMatcher(String pattern, String includes, String excludes) {
+		this.excludes = parseRules(excludes);
+		List<Rule> includeRules = parseRules(includes);
+		if (includeRules.isEmpty()) {
+			Rule patternRule = pattern == null ? null : Rule.fromRegex(pattern);
+			if (patternRule != null) {
+				includeRules.add(patternRule);
+				this.pattern = null;
+			} else {
+				this.pattern = Pattern.compile(pattern == null ? "" : pattern);
+			}
+		} else {
+			this.pattern = null;
+		}
+		this.includes = includeRules;
+	}
+
+	private static List<Rule> parseRules(String rules) {
+		List<Rule> parsed = new ArrayList<Rule>();
+		if (rules != null) {
+			for (String rule : rules.split(",")) {
+				rule = rule.trim();
+				if (rule.length() > 0) {
+					parsed.add(Rule.fromGlobs(rule));
+				}
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * @return whether {@link #matches(Artifact, String)} needs the descriptor
+	 */
+	public boolean isDescriptorNeeded() {
+		return pattern != null;
+	}
+
+	/**
+	 * @return the regular expression the descriptors are matched by or
+	 *         {@code null}
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @param artifact
+	 * @param descriptor
+	 *            the descriptor of the artifact if
+	 *            {@link #isDescriptorNeeded()}, ignored otherwise
+	 * @return
+	 */
+	public boolean matches(Artifact artifact, String descriptor) {
+		return matchesIncludes(artifact, descriptor) && !matchesExcludes(artifact);
+	}
+
+	/**
+	 * @param artifact
+	 * @param descriptor
+	 * @return whether the artifact is included, not considering the excludes
+	 */
+	public boolean matchesIncludes(Artifact artifact, String descriptor) {
+		if (pattern != null) {
+			return pattern.matcher(descriptor).matches();
+		}
+		return matchesAny(includes, artifact);
+	}
+
+	/**
+	 * @param artifact
+	 * @return whether the artifact is excluded
+	 */
+	public boolean matchesExcludes(Artifact artifact) {
+		return matchesAny(excludes, artifact);
+	}
+
+	private static boolean matchesAny(List<Rule> rules, Artifact artifact) {
+		for (int i = 0; i < rules.size(); ++i) {
+			if (rules.get(i).matches(artifact)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return pattern != null ? "pattern " + pattern + ", excludes " + excludes : "includes " + includes
+				+ ", excludes " + excludes;
+	}
+
+	/**
+	 * Single {@code groupId:artifactId:type:classifier} rule.
+	 */
+	private static class Rule {
+
+		private final String source;
+		private final FieldMatcher[] fields;
+		/**
+		 * How a missing field is matched, the regular expression sees
+		 * {@code null}.
+		 */
+		private final String missingField;
+
+		private Rule(String source, FieldMatcher[] fields, String missingField) {
+			this.source = source;
+			this.fields = fields;
+			this.missingField = missingField;
+		}
+
+		static Rule fromGlobs(String rule) {
+			String[] globs = rule.split(":", -1);
+			if (globs.length > FIELDS) {
+				throw new IllegalArgumentException("Artifact rule '" + rule
+						+ "' has more fields than groupId:artifactId:type:classifier");
+			}
+			FieldMatcher[] fields = new FieldMatcher[FIELDS];
+			for (int i = 0; i < FIELDS; ++i) {
+				fields[i] = i < globs.length ? FieldMatcher.fromGlob(globs[i]) : FieldMatcher.ANY;
+			}
+			return new Rule(rule, fields, "");
+		}
+
+		/**
+		 * @param regex
+		 * @return equivalent rule or {@code null} if the expression is not
+		 *         that simple
+		 */
+		static Rule fromRegex(String regex) {
+			if (".*".equals(regex)) {
+				return new Rule(regex, new FieldMatcher[] { FieldMatcher.ANY, FieldMatcher.ANY,
+						FieldMatcher.ANY, FieldMatcher.ANY }, "null");
+			}
+			// the wildcard contains the separator itself
+			String[] parts = regex.replace(ANY_FIELD_REGEX, ANY_FIELD).split(":", -1);
+			if (parts.length != FIELDS) {
+				return null;
+			}
+			FieldMatcher[] fields = new FieldMatcher[FIELDS];
+			for (int i = 0; i < FIELDS; ++i) {
+				if (ANY_FIELD.equals(parts[i])) {
+					fields[i] = FieldMatcher.ANY;
+				} else {
+					String literal = unescapeLiteral(parts[i]);
+					if (literal == null) {
+						return null;
+					}
+					fields[i] = FieldMatcher.exact(literal);
+				}
+			}
+			return new Rule(regex, fields, "null");
+		}
+
+		/**
+		 * @param regex
+		 * @return the literal matched by the expression or {@code null} if
+		 *         it's not a plain literal
+		 */
+		private static String unescapeLiteral(String regex) {
+			StringBuilder literal = new StringBuilder(regex.length());
+			for (int i = 0; i < regex.length(); ++i) {
+				char c = regex.charAt(i);
+				if (c == '\\' && i + 1 < regex.length() && regex.charAt(i + 1) == '.') {
+					literal.append('.');
+					++i;
+				} else if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+					literal.append(c);
+				} else {
+					return null;
+				}
+			}
+			return literal.toString();
+		}
+
+		boolean matches(Artifact artifact) {
+			return fields[0].matches(valueOf(artifact.getGroupId()))
+					&& fields[1].matches(valueOf(artifact.getArtifactId()))
+					&& fields[2].matches(valueOf(artifact.getType()))
+					&& fields[3].matches(valueOf(artifact.getClassifier()));
+		}
+
+		private String valueOf(String field) {
+			return field == null ? missingField : field;
+		}
+
+		@Override
+		public String toString() {
+			return source;
+		}
+	}
+
+	/**
+	 * Glob over a single field.
+	 */
+	private static class FieldMatcher {
+
+		static final FieldMatcher ANY = new FieldMatcher(Kind.ANY, "");
+
+		enum Kind {
+			ANY, EXACT, PREFIX, SUFFIX, GLOB
+		}
+
+		private final Kind kind;
+		private final String text;
+
+		private FieldMatcher(Kind kind, String text) {
+			this.kind = kind;
+			this.text = text;
+		}
+
+		static FieldMatcher exact(String text) {
+			return new FieldMatcher(Kind.EXACT, text);
+		}
+
+		static FieldMatcher fromGlob(String glob) {
+			if (glob.length() == 0 || "*".equals(glob)) {
+				// an empty field is as good as a missing one
+				return ANY;
+			}
+			if (glob.indexOf('?') < 0) {
+				int star = glob.indexOf('*');
+				if (star < 0) {
+					return exact(glob);
+				}
+				if (star == glob.length() - 1) {
+					return new FieldMatcher(Kind.PREFIX, glob.substring(0, star));
+				}
+				if (star == 0 && glob.indexOf('*', 1) < 0) {
+					return new FieldMatcher(Kind.SUFFIX, glob.substring(1));
+				}
+			}
+			return new FieldMatcher(Kind.GLOB, glob);
+		}
+
+		boolean matches(String value) {
+			if (value == null) {
+				value = "";
+			}
+			switch (kind) {
+			case ANY:
+				return true;
+			case EXACT:
+				return text.equals(value);
+			case PREFIX:
+				return value.startsWith(text);
+			case SUFFIX:
+				return value.endsWith(text);
+			default:
+				return globMatches(text, value);
+			}
+		}
+
+		/**
+		 * Backtracking to the last star only, no allocation.
+		 */
+		private static boolean globMatches(String glob, String value) {
+			int g = 0;
+			int v = 0;
+			int star = -1;
+			int starValue = 0;
+			while (v < value.length()) {
+				if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == value.charAt(v))) {
+					++g;
+					++v;
+				} else if (g < glob.length() && glob.charAt(g) == '*') {
+					star = g++;
+					starValue = v;
+				} else if (star >= 0) {
+					g = star + 1;
+					v = ++starValue;
+				} else {
+					return false;
+				}
+			}
+			while (g < glob.length() && glob.charAt(g) == '*') {
+				++g;
+			}
+			return g == glob.length();
+		}
+
+		@Override
+		public String toString() {
+			return kind + " " + text;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes files only if their content changes and never leaves them half
+ * written.<br>
+ * 
+ * The new content is compared with the current one by size first and then in
+ * bulk. Changed content is written into a temporary file in the same
+ * directory which then atomically replaces the target file. A scanner polling
+ * the target file (e.g. Jetty hot deployer) thus sees either the old or the
+ * new content, never a truncated one.
+ * 
+ * @author stepan
+ *
+ */
+public class AtomicFileWriter {
+
+	private static final int COMPARE_BUFFER_SIZE = 64 * 1024;
+
+	private AtomicFileWriter() {
+	}
+
+	/**
+	 * Writes the content into the file if it differs from the file content.
+	 * 
+	 * @param file
+	 * @param content
+	 * @return {@code true} if the file was written
+	 * @throws IOException
+	 */
+	public static boolean writeIfChanged(File file, byte[] content) throws IOException {
+		if (contentEquals(file, content)) {
+			return false;
+		}
+		write(file, content);
+		return true;
+	}
+
+	/**
+	 * Compares the file content with the bytes.
+	 * 
+	 * @param file
+	 * @param content
+	 * @return {@code false} if the file doesn't exist or its content differs
+	 * @throws IOException
+	 */
+	public static boolean contentEquals(File file, byte[] content) throws IOException {
+		if (!file.isFile() || file.length() != content.length) {
+			return false;
+		}
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(Math.min(COMPARE_BUFFER_SIZE, Math.max(1, content.length)));
+			int offset = 0;
+			while (offset < content.length) {
+				buffer.clear();
+				int read = channel.read(buffer);
+				if (read == -1) {
+					return false;
+				}
+				buffer.flip();
+				if (!buffer.equals(ByteBuffer.wrap(content, offset, read))) {
+					return false;
+				}
+				offset += read;
+			}
+			// the file might have grown meanwhile
+			return channel.size() == content.length;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Atomically replaces the file content.
+	 * 
+	 * @param file
+	 * @param content
+	 * @throws IOException
+	 */
+	public static void write(File file, byte[] content) throws IOException {
+		Path temporaryFile = createTemporaryFile(file);
+		try {
+			Files.write(temporaryFile, content);
+			replace(temporaryFile, file);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * Creates a temporary file next to the target file.
+	 * 
+	 * @param file
+	 *            the target file
+	 * @return
+	 * @throws IOException
+	 */
+	static Path createTemporaryFile(File file) throws IOException {
+		File parentDir = file.getAbsoluteFile().getParentFile();
+		if (parentDir != null) {
+			parentDir.mkdirs();
+		}
+		// unlike Files.createTempFile, the file gets the default permissions
+		return File.createTempFile("." + file.getName(), ".tmp", parentDir).toPath();
+	}
+
+	/**
+	 * Moves the temporary file over the target file, atomically if the
+	 * filesystem supports it.
+	 * 
+	 * @param temporaryFile
+	 * @param file
+	 * @throws IOException
+	 */
+	static void replace(Path temporaryFile, File file) throws IOException {
+		try {
+			Files.move(temporaryFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Output stream which replaces the file only if the written content differs
+ * from the file content.<br>
+ *
+ * The written bytes are compared with the current file content as they come.
+ * Nothing is buffered nor written while they are equal. At the first
+ * difference a temporary file is created next to the target file, the equal
+ * prefix is copied into it from the current file and the rest of the content
+ * goes straight into the temporary file. The temporary file atomically
+ * replaces the target file on {@link #commit()}, see {@link AtomicFileWriter}.
+ * <br>
+ *
+ * {@link #close()} only ends the content, the file is changed by
+ * {@link #commit()} or left intact by {@link #discard()}.
+ *
+ * @author stepan
+ *
+ */
+public class ChangeDetectingOutputStream extends OutputStream {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private InputStream current;
+	private final byte[] compareBuffer;
+	private long matched;
+
+	private Path temporaryFile;
+	private OutputStream temporary;
+
+	private long count;
+
+	/**
+	 * @param file
+	 *            the target file, it doesn't need to exist
+	 * @throws IOException
+	 */
+	public ChangeDetectingOutputStream(File file) throws IOException {
+		this.file = file;
+		if (file.isFile()) {
+			current = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+			compareBuffer = new byte[BUFFER_SIZE];
+		} else {
+			compareBuffer = null;
+			diverge();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		count += length;
+		if (temporary == null) {
+			int equal = compare(bytes, offset, length);
+			matched += equal;
+			if (equal == length) {
+				return;
+			}
+			diverge();
+			offset += equal;
+			length -= equal;
+		}
+		temporary.write(bytes, offset, length);
+	}
+
+	/**
+	 * @return number of equal bytes at the beginning
+	 */
+	private int compare(byte[] bytes, int offset, int length) throws IOException {
+		int equal = 0;
+		while (equal < length) {
+			int read = current.read(compareBuffer, 0, Math.min(compareBuffer.length, length - equal));
+			if (read == -1) {
+				return equal;
+			}
+			for (int i = 0; i < read; ++i) {
+				if (compareBuffer[i] != bytes[offset + equal + i]) {
+					return equal + i;
+				}
+			}
+			equal += read;
+		}
+		return equal;
+	}
+
+	/**
+	 * Starts writing into the temporary file with the already matched prefix.
+	 */
+	private void diverge() throws IOException {
+		IOUtil.close(current);
+		current = null;
+
+		temporaryFile = AtomicFileWriter.createTemporaryFile(file);
+		temporary = new BufferedOutputStream(Files.newOutputStream(temporaryFile), BUFFER_SIZE);
+		if (matched > 0) {
+			InputStream prefix = new FileInputStream(file);
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				long remaining = matched;
+				while (remaining > 0) {
+					int read = prefix.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if (read == -1) {
+						throw new IOException("File changed while being compared: " + file);
+					}
+					temporary.write(buffer, 0, read);
+					remaining -= read;
+				}
+			} finally {
+				IOUtil.close(prefix);
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (temporary != null) {
+			temporary.flush();
+		}
+	}
+
+	/**
+	 * Ends the content; the file is not touched until {@link #commit()}.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * @return number of bytes written
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Replaces the file if the written content differs.
+	 *
+	 * @return {@code true} if the file was written
+	 * @throws IOException
+	 */
+	public boolean commit() throws IOException {
+		if (temporary == null && current.read() != -1) {
+			// the current file is longer
+			diverge();
+		}
+		if (temporary == null) {
+			IOUtil.close(current);
+			current = null;
+			return false;
+		}
+		temporary.close();
+		temporary = null;
+		AtomicFileWriter.replace(temporaryFile, file);
+		temporaryFile = null;
+		return true;
+	}
+
+	/**
+	 * Leaves the file intact unless already committed and releases all the
+	 * resources. Safe to call repeatedly.
+	 */
+	public void discard() {
+		IOUtil.close(current);
+		current = null;
+		IOUtil.close(temporary);
+		temporary = null;
+		if (temporaryFile != null) {
+			try {
+				Files.deleteIfExists(temporaryFile);
+			} catch (IOException e) {
+				// nothing to do, it's just a temporary file
+			}
+			temporaryFile = null;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Jetty Context xml file configuration writer which renders a
+ * {@link CompiledTemplate}.<br>
+ *
+ * The template is compiled on the first use and stored; as long as the
+ * template, the injection targets and the plugin version stay the same, later
+ * executions only concatenate the stored segments with the freshly generated
+ * entries. The output is the same as the output of the
+ * {@link StreamingJettyConfWriter}.
+ *
+ * @author stepan
+ *
+ */
+public class CompiledJettyConfWriter implements ContextXmlWriter {
+
+	private final List<File> classpathFiles;
+	private final List<File> webAppFiles;
+	private final ExecutionReport report;
+	private final File compiledTemplateFile;
+	private final String pluginVersion;
+	private InjectionTarget classpathTarget = InjectionTarget.CLASSPATH;
+	private InjectionTarget webAppTarget = InjectionTarget.WEBAPP;
+	private PathBases bases;
+
+	/**
+	 * @param classpathFiles
+	 * @param webAppFiles
+	 * @param report
+	 * @param compiledTemplateFile
+	 *            where the compiled template is stored
+	 * @param pluginVersion
+	 *            compiled templates of other versions are not used
+	 */
+	public CompiledJettyConfWriter(List<File> classpathFiles, List<File> webAppFiles, ExecutionReport report,
+			File compiledTemplateFile, String pluginVersion) {
+		this.classpathFiles = classpathFiles;
+		this.webAppFiles = webAppFiles;
+		this.report = report;
+		this.compiledTemplateFile = compiledTemplateFile;
+		this.pluginVersion = pluginVersion;
+	}
+
+	/**
+	 * Only {@link InjectionTarget#isSimple() simple} targets are supported
+	 * since the template is compiled by the {@link TemplateScanner}.
+	 */
+	public void setInjectionTargets(InjectionTarget classpathTarget, InjectionTarget webAppTarget)
+			throws MojoExecutionException {
+		for (InjectionTarget target : Arrays.asList(classpathTarget, webAppTarget)) {
+			if (!target.isSimple()) {
+				throw new MojoExecutionException("Injection target '" + target
+						+ "' is not supported by the compiled engine, use the //Element[@attribute=\"value\"] form"
+						+ " or the dom engine");
+			}
+		}
+		this.classpathTarget = classpathTarget;
+		this.webAppTarget = webAppTarget;
+	}
+
+	public void setPathBases(PathBases bases) {
+		this.bases = bases;
+	}
+
+	public void writeToStream(OutputStream outputStream, File contextXmlTemplate)
+			throws MojoExecutionException, IOException, MojoFailureException {
+		CompiledTemplate template = loadOrCompile(contextXmlTemplate);
+
+		long start = report.start();
+		try {
+			OutputStream output = new BufferedOutputStream(outputStream);
+			template.render(output, bases == null ? "" : bases.declarationsXml(),
+					ContextEntries.classpathXml(classpathFiles, bases),
+					ContextEntries.webAppItemsXml(webAppFiles, bases));
+			output.flush();
+			outputStream.close();
+		} finally {
+			report.stop(ExecutionReport.INJECT, start);
+		}
+	}
+
+	/**
+	 * @param contextXmlTemplate
+	 * @return the stored compiled template if its key matches, newly compiled
+	 *         and stored one otherwise
+	 * @throws MojoExecutionException
+	 * @throws IOException
+	 * @throws MojoFailureException
+	 */
+	private CompiledTemplate loadOrCompile(File contextXmlTemplate) throws MojoExecutionException, IOException,
+			MojoFailureException {
+		byte[] content = Files.readAllBytes(contextXmlTemplate.toPath());
+
+		ExecutionFingerprint key = new ExecutionFingerprint();
+		key.add("pluginVersion", pluginVersion);
+		key.add("classpathTarget", classpathTarget.getExpression());
+		key.add("webAppTarget", webAppTarget.getExpression());
+		key.addContent("contextXmlTemplate", content);
+
+		CompiledTemplate template = CompiledTemplate.load(compiledTemplateFile, key.toHex());
+		if (template != null) {
+			report.count(ExecutionReport.COMPILED_TEMPLATE_HITS, 1);
+			return template;
+		}
+
+		long start = report.start();
+		template = CompiledTemplate.compile(content, key.toHex(), classpathTarget, webAppTarget);
+		template.store(compiledTemplateFile);
+		report.stop(ExecutionReport.COMPILE, start);
+		return template;
+	}
+}
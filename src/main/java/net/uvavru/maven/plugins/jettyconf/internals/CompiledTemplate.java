@@ -0,0 +1,240 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Jetty context xml template scanned once by the {@link TemplateScanner} and
+ * kept as static byte segments separated by slots of the dynamic content.<br>
+ *
+ * Rendering just concatenates the segments with the content of the slots,
+ * the template is neither read nor scanned again. The segments are encoded
+ * in the template encoding so the output equals the output of the
+ * {@link StreamingJettyConfWriter}.<br>
+ *
+ * The compiled template is stored in a binary file together with its key.
+ * The key is computed by the caller from everything the compilation depends
+ * on (the template content, the injection targets, the plugin version); a
+ * stored template with another key is ignored.
+ *
+ * @author stepan
+ *
+ */
+public class CompiledTemplate {
+
+	private static final String FORMAT = "jetty-conf compiled template";
+
+	private static final int VERSION = 1;
+
+	/**
+	 * Slot of the {@link PathBases} declarations.
+	 */
+	public static final byte DECLARATIONS = 0;
+
+	/**
+	 * Slot of the classpath entries.
+	 */
+	public static final byte CLASSPATH = 1;
+
+	/**
+	 * Slot of the web app resources.
+	 */
+	public static final byte WEBAPP = 2;
+
+	private final String key;
+	private final String encoding;
+	private final List<byte[]> segments;
+	private final byte[] slots;
+
+	private CompiledTemplate(String key, String encoding, List<byte[]> segments, byte[] slots) {
+		this.key = key;
+		this.encoding = encoding;
+		this.segments = segments;
+		this.slots = slots;
+	}
+
+	/**
+	 * Scans the template into segments and slots.
+	 *
+	 * @param template
+	 *            content of the template
+	 * @param key
+	 * @param classpathTarget
+	 * @param webAppTarget
+	 * @return
+	 * @throws IOException
+	 * @throws MojoFailureException
+	 *             if any of the targets is missing in the template
+	 */
+	public static CompiledTemplate compile(byte[] template, String key, final InjectionTarget classpathTarget,
+			final InjectionTarget webAppTarget) throws IOException, MojoFailureException {
+		InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(template));
+		String encoding = TemplateScanner.detectEncoding(inputStream);
+
+		final List<byte[]> segments = new ArrayList<byte[]>();
+		final ByteArrayOutputStream slotPositions = new ByteArrayOutputStream();
+		final ByteArrayOutputStream segment = new ByteArrayOutputStream(template.length);
+		// a single writer emits the byte order mark only once
+		final Writer writer = new OutputStreamWriter(segment, encoding);
+
+		TemplateScanner scanner = new TemplateScanner(Arrays.asList(classpathTarget, webAppTarget));
+		scanner.scan(new InputStreamReader(inputStream, encoding), new TemplateSink() {
+
+			public void text(char[] chars, int offset, int length) throws IOException {
+				writer.write(chars, offset, length);
+			}
+
+			public void text(String text) throws IOException {
+				writer.write(text);
+			}
+
+			public void declarations() throws IOException {
+				slot(DECLARATIONS);
+			}
+
+			public void slot(InjectionTarget target) throws IOException {
+				slot(target == classpathTarget ? CLASSPATH : WEBAPP);
+			}
+
+			private void slot(byte slot) throws IOException {
+				writer.flush();
+				segments.add(segment.toByteArray());
+				segment.reset();
+				slotPositions.write(slot);
+			}
+		});
+		writer.flush();
+		segments.add(segment.toByteArray());
+
+		return new CompiledTemplate(key, fragmentEncoding(encoding), segments, slotPositions.toByteArray());
+	}
+
+	/**
+	 * @param encoding
+	 * @return encoding of content rendered into the middle of the document,
+	 *         i.e. without the byte order mark
+	 */
+	private static String fragmentEncoding(String encoding) {
+		String name = Charset.forName(encoding).name();
+		if ("UTF-16".equals(name)) {
+			return "UTF-16BE";
+		}
+		if ("UTF-32".equals(name)) {
+			return "UTF-32BE";
+		}
+		return encoding;
+	}
+
+	/**
+	 * Loads the template stored by {@link #store(File)}.
+	 *
+	 * @param file
+	 * @param key
+	 * @return the template or {@code null} if the file is missing, corrupted
+	 *         or has another key
+	 */
+	public static CompiledTemplate load(File file, String key) {
+		if (!file.isFile()) {
+			return null;
+		}
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (!FORMAT.equals(input.readUTF()) || input.readInt() != VERSION || !key.equals(input.readUTF())) {
+				return null;
+			}
+			String encoding = input.readUTF();
+			byte[] slots = new byte[readLength(input, file)];
+			List<byte[]> segments = new ArrayList<byte[]>(slots.length + 1);
+			for (int i = 0; i <= slots.length; ++i) {
+				byte[] segment = new byte[readLength(input, file)];
+				input.readFully(segment);
+				segments.add(segment);
+				if (i < slots.length) {
+					slots[i] = input.readByte();
+				}
+			}
+			return new CompiledTemplate(key, encoding, segments, slots);
+		} catch (IOException e) {
+			return null;
+		} finally {
+			IOUtil.close(input);
+		}
+	}
+
+	private static int readLength(DataInputStream input, File file) throws IOException {
+		int length = input.readInt();
+		if (length < 0 || length > file.length()) {
+			throw new IOException("Corrupted compiled template: " + file);
+		}
+		return length;
+	}
+
+	/**
+	 * @param file
+	 * @throws IOException
+	 */
+	public void store(File file) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(content);
+		output.writeUTF(FORMAT);
+		output.writeInt(VERSION);
+		output.writeUTF(key);
+		output.writeUTF(encoding);
+		output.writeInt(slots.length);
+		for (int i = 0; i < segments.size(); ++i) {
+			output.writeInt(segments.get(i).length);
+			output.write(segments.get(i));
+			if (i < slots.length) {
+				output.writeByte(slots[i]);
+			}
+		}
+		output.flush();
+		AtomicFileWriter.write(file, content.toByteArray());
+	}
+
+	/**
+	 * Writes the segments and the content of the slots.
+	 *
+	 * @param outputStream
+	 * @param declarations
+	 *            content of the {@link #DECLARATIONS} slot
+	 * @param classpath
+	 *            content of the {@link #CLASSPATH} slot
+	 * @param webApp
+	 *            content of the {@link #WEBAPP} slot
+	 * @throws IOException
+	 */
+	public void render(OutputStream outputStream, String declarations, String classpath, String webApp)
+			throws IOException {
+		byte[][] content = new byte[][] { declarations.getBytes(encoding), classpath.getBytes(encoding),
+				webApp.getBytes(encoding) };
+		for (int i = 0; i < slots.length; ++i) {
+			outputStream.write(segments.get(i));
+			outputStream.write(content[slots[i]]);
+		}
+		outputStream.write(segments.get(slots.length));
+	}
+
+	public String getKey() {
+		return key;
+	}
+}
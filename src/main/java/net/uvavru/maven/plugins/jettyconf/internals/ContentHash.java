@@ -0,0 +1,59 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Cheap fingerprint of a file content: the size and the CRC32 checksum.<br>
+ *
+ * Equal fingerprints don't prove equal content, {@link #contentEquals(File, File)}
+ * confirms it. Different fingerprints prove different content.
+ *
+ * @author stepan
+ *
+ */
+public class ContentHash {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private ContentHash() {
+	}
+
+	/**
+	 * @param file
+	 * @return {@code <size>:<crc32>}
+	 * @throws IOException
+	 */
+	public static String compute(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		long size = 0;
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+				size += read;
+			}
+		} finally {
+			IOUtil.close(inputStream);
+		}
+		return size + ":" + Long.toHexString(crc.getValue());
+	}
+
+	/**
+	 * @param file1
+	 * @param file2
+	 * @return whether the files have byte for byte equal content
+	 * @throws IOException
+	 */
+	public static boolean contentEquals(File file1, File file2) throws IOException {
+		return FileUtils.contentEquals(file1, file2);
+	}
+}
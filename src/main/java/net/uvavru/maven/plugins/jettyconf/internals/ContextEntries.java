@@ -0,0 +1,121 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Textual representation of the dynamic content injected into Jetty context
+ * xml files.
+ * 
+ * @author stepan
+ *
+ */
+public class ContextEntries {
+
+	private ContextEntries() {
+	}
+
+	/**
+	 * @param classpathFiles
+	 * @return content of the {@code extraClasspath} setter
+	 */
+	public static String classpath(List<File> classpathFiles) {
+		StringBuilder classpath = new StringBuilder();
+		for (File file : classpathFiles) {
+			classpath.append('\n').append(file.toURI()).append(';');
+		}
+		return classpath.toString();
+	}
+
+	/**
+	 * @param file
+	 * @return content of a single web app resource {@code Item}
+	 */
+	public static String webAppResource(File file) {
+		return file.toURI().toString();
+	}
+
+	/**
+	 * @param classpathFiles
+	 * @param bases
+	 *            bases the entries are relative to, may be {@code null}
+	 * @return xml content of the {@code extraClasspath} setter
+	 */
+	public static String classpathXml(List<File> classpathFiles, PathBases bases) {
+		if (bases == null || bases.isEmpty()) {
+			return escapeXml(classpath(classpathFiles));
+		}
+		StringBuilder classpath = new StringBuilder();
+		for (File file : classpathFiles) {
+			classpath.append('\n').append(bases.toXml(file.toURI().toString())).append(';');
+		}
+		return classpath.toString();
+	}
+
+	/**
+	 * @param file
+	 * @param bases
+	 *            bases the resource is relative to, may be {@code null}
+	 * @return xml content of a single web app resource {@code Item}
+	 */
+	public static String webAppResourceXml(File file, PathBases bases) {
+		if (bases == null || bases.isEmpty()) {
+			return escapeXml(webAppResource(file));
+		}
+		return bases.toXml(webAppResource(file));
+	}
+
+	/**
+	 * @param webAppFiles
+	 * @param bases
+	 *            bases the resources are relative to, may be {@code null}
+	 * @return {@code Item}s of the web app resources array, each on its own
+	 *         line
+	 */
+	public static String webAppItemsXml(List<File> webAppFiles, PathBases bases) {
+		StringBuilder items = new StringBuilder();
+		for (File resource : webAppFiles) {
+			items.append("<Item>").append(webAppResourceXml(resource, bases)).append("</Item>\n");
+		}
+		return items.toString();
+	}
+
+	/**
+	 * Escapes xml markup characters.
+	 * 
+	 * @param text
+	 * @return
+	 */
+	public static String escapeXml(String text) {
+		StringBuilder escaped = null;
+		for (int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			String replacement;
+			switch (c) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			default:
+				replacement = null;
+			}
+			if (replacement != null && escaped == null) {
+				escaped = new StringBuilder(text.length() + 16);
+				escaped.append(text, 0, i);
+			}
+			if (escaped != null) {
+				if (replacement != null) {
+					escaped.append(replacement);
+				} else {
+					escaped.append(c);
+				}
+			}
+		}
+		return escaped == null ? text : escaped.toString();
+	}
+}
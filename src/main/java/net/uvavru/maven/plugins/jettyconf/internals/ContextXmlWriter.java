@@ -0,0 +1,52 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.xml.sax.SAXException;
+
+/**
+ * Writer of Jetty context xml files with injected dynamic content.
+ * 
+ * @author stepan
+ *
+ */
+public interface ContextXmlWriter {
+
+	/**
+	 * Sets elements where the dynamic content is injected, defaults are
+	 * {@link InjectionTarget#CLASSPATH} and {@link InjectionTarget#WEBAPP}.
+	 * 
+	 * @param classpathTarget
+	 * @param webAppTarget
+	 * @throws MojoExecutionException
+	 *             if the writer doesn't support the targets
+	 */
+	void setInjectionTargets(InjectionTarget classpathTarget, InjectionTarget webAppTarget)
+			throws MojoExecutionException;
+
+	/**
+	 * Sets bases the entries are emitted relative to.
+	 * 
+	 * @param bases
+	 *            {@code null} for absolute entries
+	 */
+	void setPathBases(PathBases bases);
+
+	/**
+	 * Writes modified Jetty context xml file to the output stream.
+	 * 
+	 * @param outputStream
+	 * @param contextXmlTemplate
+	 * @throws SAXException
+	 * @throws MojoExecutionException
+	 * @throws IOException
+	 * @throws MojoFailureException
+	 */
+	void writeToStream(OutputStream outputStream, File contextXmlTemplate)
+			throws SAXException, MojoExecutionException, IOException,
+			MojoFailureException;
+}
@@ -0,0 +1,187 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Digest of all inputs of a single mojo execution.<br>
+ *
+ * The fingerprint is persisted next to the generated file. If the stored
+ * fingerprint equals the current one and the generated file hasn't been
+ * touched since, the execution can be skipped.
+ *
+ * @author stepan
+ *
+ */
+public class ExecutionFingerprint {
+
+	private static final String ALGORITHM = "SHA-1";
+
+	private final MessageDigest digest;
+
+	private String hex;
+
+	public ExecutionFingerprint() throws MojoExecutionException {
+		try {
+			digest = MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new MojoExecutionException("Internal error, digest not available: " + e.getMessage(), e);
+		}
+	}
+
+	private ExecutionFingerprint(MessageDigest digest) {
+		this.digest = digest;
+	}
+
+	/**
+	 * Creates an independent copy of this fingerprint which can be extended
+	 * with more values.
+	 *
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public ExecutionFingerprint copy() throws MojoExecutionException {
+		try {
+			return new ExecutionFingerprint((MessageDigest) digest.clone());
+		} catch (CloneNotSupportedException e) {
+			throw new MojoExecutionException("Internal error, digest cannot be copied: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Adds a named value into the fingerprint.
+	 *
+	 * @param key
+	 * @param value might be {@code null}
+	 */
+	public void add(String key, Object value) {
+		update(key);
+		update(value == null ? "\u0000null" : value.toString());
+	}
+
+	/**
+	 * Adds all entries of the map sorted by their keys.
+	 *
+	 * @param key
+	 * @param map
+	 */
+	public void addAll(String key, Map<?, ?> map) {
+		List<String> keys = new ArrayList<String>();
+		for (Object mapKey : map.keySet()) {
+			keys.add(String.valueOf(mapKey));
+		}
+		Collections.sort(keys);
+
+		add(key, keys.size());
+		for (String mapKey : keys) {
+			Object value = map.get(mapKey);
+			add(key + "." + mapKey, value);
+		}
+	}
+
+	/**
+	 * Adds content of the file into the fingerprint.
+	 *
+	 * @param key
+	 * @param file
+	 * @throws IOException
+	 */
+	public void addContent(String key, File file) throws IOException {
+		update(key);
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			IOUtil.close(inputStream);
+		}
+	}
+
+	/**
+	 * Adds the content into the fingerprint.
+	 *
+	 * @param key
+	 * @param content
+	 */
+	public void addContent(String key, byte[] content) {
+		update(key);
+		digest.update(content);
+	}
+
+	private void update(String value) {
+		try {
+			digest.update(value.getBytes("UTF-8"));
+			digest.update((byte) 0);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return hex representation of the fingerprint; no more values can be
+	 *         added afterwards
+	 */
+	public String toHex() {
+		if (hex == null) {
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest()) {
+				builder.append(String.format("%02x", b & 0xff));
+			}
+			hex = builder.toString();
+		}
+		return hex;
+	}
+
+	/**
+	 * Whether the fingerprint stored in {@code fingerprintFile} equals this
+	 * one and the {@code generatedFile} hasn't been modified after the
+	 * fingerprint was stored.
+	 *
+	 * @param fingerprintFile
+	 * @param generatedFile
+	 * @return
+	 */
+	public boolean isUpToDate(File fingerprintFile, File generatedFile) {
+		if (!fingerprintFile.isFile() || !generatedFile.isFile()) {
+			return false;
+		}
+		if (generatedFile.lastModified() > fingerprintFile.lastModified()) {
+			return false;
+		}
+		try {
+			return toHex().equals(FileUtils.fileRead(fingerprintFile, "UTF-8").trim());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the fingerprint into the file.
+	 *
+	 * @param fingerprintFile
+	 * @throws IOException
+	 */
+	public void store(File fingerprintFile) throws IOException {
+		File parentDir = fingerprintFile.getParentFile();
+		if (parentDir != null) {
+			parentDir.mkdirs();
+		}
+		FileUtils.fileWrite(fingerprintFile.getPath(), "UTF-8", toHex());
+	}
+}
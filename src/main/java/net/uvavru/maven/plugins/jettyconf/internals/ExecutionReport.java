@@ -0,0 +1,210 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall times and counters of the phases of a single mojo execution.<br>
+ *
+ * Phases running concurrently (e.g. rendering of several templates) are
+ * accumulated, so the sum of the phases might exceed the total time. The
+ * report is stored as a JSON document so that it can be processed on CI.
+ *
+ * @author stepan
+ *
+ */
+public class ExecutionReport {
+
+	public static final String CANDIDATES = "candidates";
+	public static final String FILTER = "filter";
+	public static final String TRANSLATE = "translate";
+	public static final String WEBAPP_ALTERNATE = "webAppAlternate";
+	public static final String FINGERPRINT = "fingerprint";
+	public static final String PARSE = "parse";
+	public static final String INJECT = "inject";
+	public static final String SERIALIZE = "serialize";
+	public static final String FILTERING = "filtering";
+	public static final String WRITE_IF_CHANGED = "writeIfChanged";
+	public static final String SCAN = "scan";
+	public static final String DEDUPLICATE = "deduplicate";
+	public static final String PACKAGE_INDEX = "packageIndex";
+	public static final String COMPILE = "compile";
+
+	public static final String ARTIFACTS = "artifacts";
+	public static final String MATCHED_ARTIFACTS = "matchedArtifacts";
+	public static final String PATTERNS = "patterns";
+	public static final String TRANSLATED_PATHS = "translatedPaths";
+	public static final String FILESYSTEM_CALLS = "fileSystemCalls";
+	public static final String TEMPLATES = "templates";
+	public static final String BYTES_IN = "bytesIn";
+	public static final String BYTES_OUT = "bytesOut";
+	public static final String FILES_WRITTEN = "filesWritten";
+	public static final String FILES_PRESERVED = "filesPreserved";
+	public static final String SCANNED_ENTRIES = "scannedEntries";
+	public static final String DUPLICATE_ENTRIES = "duplicateEntries";
+	public static final String COMPILED_TEMPLATE_HITS = "compiledTemplateHits";
+
+	private final long started = System.nanoTime();
+	private long finished;
+
+	private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+	private final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+	private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+
+	/**
+	 * @return start of a phase to be passed to {@link #stop(String, long)}
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the end of the phase.
+	 *
+	 * @param phase
+	 * @param start
+	 *            as returned by {@link #start()}
+	 */
+	public synchronized void stop(String phase, long start) {
+		long elapsed = System.nanoTime() - start;
+		long[] times = phases.get(phase);
+		if (times == null) {
+			times = new long[2];
+			phases.put(phase, times);
+		}
+		times[0] += elapsed;
+		++times[1];
+	}
+
+	/**
+	 * Adds the {@code delta} to the counter.
+	 *
+	 * @param counter
+	 * @param delta
+	 */
+	public synchronized void count(String counter, long delta) {
+		Long value = counters.get(counter);
+		counters.put(counter, value == null ? delta : value + delta);
+	}
+
+	public synchronized long getCounter(String counter) {
+		Long value = counters.get(counter);
+		return value == null ? 0 : value;
+	}
+
+	/**
+	 * Stops the clock of the whole execution.
+	 */
+	public synchronized void finish() {
+		if (finished == 0) {
+			finished = System.nanoTime();
+		}
+	}
+
+	private long total() {
+		return (finished == 0 ? System.nanoTime() : finished) - started;
+	}
+
+	/**
+	 * Describes the execution, e.g. the goal or the project.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void describe(String key, String value) {
+		attributes.put(key, value);
+	}
+
+	/**
+	 * @return one line summary of the execution
+	 */
+	public synchronized String summary() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(millis(total())).append(" ms");
+		if (!phases.isEmpty()) {
+			builder.append(" (");
+			boolean first = true;
+			for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+				if (!first) {
+					builder.append(", ");
+				}
+				first = false;
+				builder.append(phase.getKey()).append(' ')
+						.append(millis(phase.getValue()[0])).append(" ms");
+			}
+			builder.append(')');
+		}
+		for (Map.Entry<String, Long> counter : counters.entrySet()) {
+			builder.append(", ").append(counter.getKey()).append('=')
+					.append(counter.getValue());
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Stores the report as a JSON document.
+	 *
+	 * @param reportFile
+	 * @throws IOException
+	 */
+	public void store(File reportFile) throws IOException {
+		File parentDir = reportFile.getParentFile();
+		if (parentDir != null) {
+			parentDir.mkdirs();
+		}
+		AtomicFileWriter.write(reportFile, toJson().getBytes("UTF-8"));
+	}
+
+	synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{\n");
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			json.append("  ").append(quote(attribute.getKey())).append(": ")
+					.append(quote(attribute.getValue())).append(",\n");
+		}
+		json.append("  \"totalMillis\": ").append(millis(total())).append(",\n");
+
+		json.append("  \"phases\": {");
+		String separator = "\n";
+		for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+			json.append(separator).append("    ").append(quote(phase.getKey()))
+					.append(": { \"millis\": ").append(millis(phase.getValue()[0]))
+					.append(", \"calls\": ").append(phase.getValue()[1]).append(" }");
+			separator = ",\n";
+		}
+		json.append(phases.isEmpty() ? "},\n" : "\n  },\n");
+
+		json.append("  \"counters\": {");
+		separator = "\n";
+		for (Map.Entry<String, Long> counter : counters.entrySet()) {
+			json.append(separator).append("    ").append(quote(counter.getKey()))
+					.append(": ").append(counter.getValue());
+			separator = ",\n";
+		}
+		json.append(counters.isEmpty() ? "}\n" : "\n  }\n");
+		return json.append("}\n").toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.valueOf(nanos / 1000 / 1000.0);
+	}
+
+	private static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
@@ -0,0 +1,162 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An element of the Jetty context xml template where dynamic content is
+ * injected.<br>
+ *
+ * The element is selected by an XPath expression. Simple expressions of the
+ * {@code //Element[@attribute="value"]} form are recognized and such targets
+ * can be matched against elements directly, without evaluating the
+ * expression. The first element in the document order wins.
+ *
+ * @author stepan
+ *
+ */
+public class InjectionTarget {
+
+	/**
+	 * Target of the classpath entries.
+	 */
+	public static final InjectionTarget CLASSPATH = new InjectionTarget(
+			"Set", "name", "extraClasspath");
+
+	/**
+	 * Target of the web app resources.
+	 */
+	public static final InjectionTarget WEBAPP = new InjectionTarget(
+			"Array", "type", "java.lang.String");
+
+	private static final Pattern SIMPLE_EXPRESSION = Pattern
+			.compile("\\s*//([A-Za-z_][\\w.-]*)\\s*\\[\\s*@([A-Za-z_][\\w.-]*)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')\\s*\\]\\s*");
+
+	/**
+	 * Compiled expressions are not thread safe, each one is used by a single
+	 * thread at a time and then returned into its queue.
+	 */
+	private static final ConcurrentMap<String, Queue<XPathExpression>> COMPILED_EXPRESSIONS = new ConcurrentHashMap<String, Queue<XPathExpression>>();
+
+	private final String elementName;
+	private final String attributeName;
+	private final String attributeValue;
+	private final String expression;
+
+	public InjectionTarget(String elementName, String attributeName,
+			String attributeValue) {
+		this.elementName = elementName;
+		this.attributeName = attributeName;
+		this.attributeValue = attributeValue;
+		this.expression = "//" + elementName + "[@" + attributeName + "=\""
+				+ attributeValue + "\"]";
+	}
+
+	private InjectionTarget(String expression) {
+		this.elementName = null;
+		this.attributeName = null;
+		this.attributeValue = null;
+		this.expression = expression;
+	}
+
+	/**
+	 * Creates a target selected by the XPath expression.
+	 *
+	 * @param expression
+	 * @return
+	 */
+	public static InjectionTarget forExpression(String expression) {
+		Matcher matcher = SIMPLE_EXPRESSION.matcher(expression);
+		if (matcher.matches()) {
+			String value = matcher.group(3) != null ? matcher.group(3) : matcher.group(4);
+			return new InjectionTarget(matcher.group(1), matcher.group(2), value);
+		}
+		return new InjectionTarget(expression);
+	}
+
+	/**
+	 * @return whether the target is identified just by the element name and
+	 *         the attribute value
+	 */
+	public boolean isSimple() {
+		return elementName != null;
+	}
+
+	public String getElementName() {
+		return elementName;
+	}
+
+	public String getAttributeName() {
+		return attributeName;
+	}
+
+	public String getAttributeValue() {
+		return attributeValue;
+	}
+
+	/**
+	 * @return XPath expression selecting this target
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * Whether the element is this target. Applicable only to
+	 * {@link #isSimple() simple} targets.
+	 *
+	 * @param element
+	 * @return
+	 */
+	public boolean matches(Element element) {
+		return elementName.equals(element.getNodeName())
+				&& element.hasAttribute(attributeName)
+				&& attributeValue.equals(element.getAttribute(attributeName));
+	}
+
+	/**
+	 * Selects the first node by the expression. The expression is compiled
+	 * only once and reused by all the templates.
+	 *
+	 * @param context
+	 * @return the node or {@code null}
+	 * @throws XPathExpressionException
+	 */
+	public Node select(Node context) throws XPathExpressionException {
+		Queue<XPathExpression> compiledExpressions = COMPILED_EXPRESSIONS.get(expression);
+		if (compiledExpressions == null) {
+			compiledExpressions = new ConcurrentLinkedQueue<XPathExpression>();
+			Queue<XPathExpression> previous = COMPILED_EXPRESSIONS.putIfAbsent(expression, compiledExpressions);
+			if (previous != null) {
+				compiledExpressions = previous;
+			}
+		}
+
+		XPathExpression compiledExpression = compiledExpressions.poll();
+		if (compiledExpression == null) {
+			compiledExpression = XPathFactory.newInstance().newXPath().compile(expression);
+		}
+		try {
+			return (Node) compiledExpression.evaluate(context, XPathConstants.NODE);
+		} finally {
+			compiledExpressions.offer(compiledExpression);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getExpression();
+	}
+}
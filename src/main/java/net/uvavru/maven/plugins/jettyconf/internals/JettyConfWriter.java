@@ -8,10 +8,7 @@ import java.util.List;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -30,57 +27,157 @@ import org.xml.sax.SAXException;
  * @author stepan
  *
  */
-public class JettyConfWriter extends XmlWriter {
+public class JettyConfWriter extends XmlWriter implements ContextXmlWriter {
 	
 	private List<File> classpathFiles;
 	private List<File> webAppFiles;
+	private ExecutionReport report;
 
 	public JettyConfWriter(List<File> classpathFiles2, List<File> webappFiles2) {
-		this.classpathFiles = classpathFiles2;
-		this.webAppFiles = webappFiles2;
+		this(classpathFiles2, webappFiles2, new ExecutionReport());
+	}
+
+	public JettyConfWriter(List<File> classpathFiles, List<File> webAppFiles, ExecutionReport report) {
+		this.classpathFiles = classpathFiles;
+		this.webAppFiles = webAppFiles;
+		this.report = report;
 	}
 	
-	private XPath xpath = XPathFactory.newInstance().newXPath();
+	private InjectionTarget classpathTarget = InjectionTarget.CLASSPATH;
+	private InjectionTarget webAppTarget = InjectionTarget.WEBAPP;
+	private PathBases bases;
+
+	public void setInjectionTargets(InjectionTarget classpathTarget, InjectionTarget webAppTarget) {
+		this.classpathTarget = classpathTarget;
+		this.webAppTarget = webAppTarget;
+	}
+
+	public void setPathBases(PathBases bases) {
+		this.bases = bases;
+	}
 
 	/**
-	 * Selects a node in the document according to the exprXPath
+	 * Locates nodes of all the targets in the document.<br>
+	 * 
+	 * Simple targets are all located in a single walk over the document which
+	 * stops as soon as all of them are found. Other targets are selected by
+	 * their compiled expressions.
 	 * 
-	 * @param exprXPath
 	 * @param doc
-	 * @return the Node
+	 * @param targets
+	 * @return nodes in the order of the targets
 	 * @throws XPathExpressionException
 	 * @throws MojoFailureException
+	 *             if any of the targets is missing
 	 */
-	private Node selectSingleNodeSafe(String exprXPath, Document doc) throws XPathExpressionException, MojoFailureException {
-		Node node = (Node) xpath.evaluate(exprXPath, doc, XPathConstants.NODE);
-		if (node == null) {
-			throw new MojoFailureException("Cannot find xpath expression '" + exprXPath + "' in the xml template file.");
+	private Node[] locateTargets(Document doc, InjectionTarget... targets) throws XPathExpressionException, MojoFailureException {
+		Node[] nodes = new Node[targets.length];
+		
+		int simpleTargets = 0;
+		for (int i = 0; i < targets.length; ++i) {
+			if (targets[i].isSimple()) {
+				++simpleTargets;
+			} else {
+				nodes[i] = targets[i].select(doc);
+			}
+		}
+		
+		Node node = doc.getDocumentElement();
+		while (node != null && simpleTargets > 0) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				for (int i = 0; i < targets.length; ++i) {
+					if (nodes[i] == null && targets[i].isSimple() && targets[i].matches((Element) node)) {
+						nodes[i] = node;
+						--simpleTargets;
+					}
+				}
+			}
+			node = nextInDocumentOrder(node);
+		}
+		
+		for (int i = 0; i < targets.length; ++i) {
+			if (nodes[i] == null) {
+				throw new MojoFailureException("Cannot find xpath expression '" + targets[i].getExpression() + "' in the xml template file.");
+			}
+		}
+		return nodes;
+	}
+	
+	private static Node nextInDocumentOrder(Node node) {
+		if (node.getFirstChild() != null) {
+			return node.getFirstChild();
 		}
-		return node;
+		while (node != null) {
+			if (node.getNextSibling() != null) {
+				return node.getNextSibling();
+			}
+			node = node.getParentNode();
+		}
+		return null;
 	}
 
-	private void addClasspathEntries(Document doc) throws XPathExpressionException, MojoFailureException {
-		Node extraCPSetNode = selectSingleNodeSafe("//Set[@name=\"extraClasspath\"]", doc);
-		
-		String ctxClasspath = "";
-		for (File ctxEntry : classpathFiles) {
-			ctxClasspath += "\n" + ctxEntry.toURI() + ";";
+	private void addClasspathEntries(Document doc, Node extraCPSetNode) {
+		if (bases == null || bases.isEmpty()) {
+			Text ctxClasspathNode = doc.createTextNode(ContextEntries.classpath(classpathFiles));
+			extraCPSetNode.appendChild(ctxClasspathNode);
+			return;
+		}
+		for (File file : classpathFiles) {
+			extraCPSetNode.appendChild(doc.createTextNode("\n"));
+			appendUri(doc, extraCPSetNode, file.toURI().toString());
+			extraCPSetNode.appendChild(doc.createTextNode(";"));
 		}
-		Text ctxClasspathNode = doc.createTextNode(ctxClasspath);
-		extraCPSetNode.appendChild(ctxClasspathNode);
 	}
 	
-	private void addWebAppEntries(Document doc) throws XPathExpressionException, MojoFailureException {
-		Node extraResourcesNode = selectSingleNodeSafe("//Array[@type=\"java.lang.String\"]", doc);
+	private void addWebAppEntries(Document doc, Node extraResourcesNode) {
 		for (File resource : webAppFiles) {
 			Element resourceNode = doc.createElement("Item");
-			resourceNode.appendChild(doc.createTextNode(resource.toURI().toString()));
+			appendUri(doc, resourceNode, ContextEntries.webAppResource(resource));
 			extraResourcesNode.appendChild(resourceNode);
 			extraResourcesNode.appendChild(doc.createTextNode("\n"));
 		}
 		
 	}
 	
+	/**
+	 * Appends the uri relative to its base if any.
+	 */
+	private void appendUri(Document doc, Node parent, String uri) {
+		int base = bases == null ? -1 : bases.findBase(uri);
+		if (base < 0) {
+			parent.appendChild(doc.createTextNode(uri));
+			return;
+		}
+		Element reference = doc.createElement("Ref");
+		reference.setAttribute("refid", PathBases.getId(base));
+		parent.appendChild(reference);
+		parent.appendChild(doc.createTextNode(bases.relativize(uri, base)));
+	}
+	
+	/**
+	 * Declares the bases right at the beginning of the document element.
+	 */
+	private void addBaseDeclarations(Document doc) {
+		if (bases == null) {
+			return;
+		}
+		Element root = doc.getDocumentElement();
+		Node firstChild = root.getFirstChild();
+		for (int i = 0; i < bases.getBases().size(); ++i) {
+			Element declaration = doc.createElement("New");
+			declaration.setAttribute("id", PathBases.getId(i));
+			declaration.setAttribute("class", "java.lang.String");
+			Element arg = doc.createElement("Arg");
+			Element property = doc.createElement("Property");
+			property.setAttribute("name", PathBases.getId(i));
+			property.setAttribute("default", bases.getBases().get(i));
+			arg.appendChild(property);
+			declaration.appendChild(arg);
+			root.insertBefore(doc.createTextNode("\n"), firstChild);
+			root.insertBefore(declaration, firstChild);
+		}
+	}
+	
 	/**
 	 * Adds classpath entries and web app resources to the {@code Document} parameter. <br>
 	 *  
@@ -92,8 +189,10 @@ public class JettyConfWriter extends XmlWriter {
 	public Document modifyContextXmlDoc(Document doc) throws MojoExecutionException, MojoFailureException {
 
 		try {
-			addClasspathEntries(doc);
-			addWebAppEntries(doc);
+			Node[] nodes = locateTargets(doc, classpathTarget, webAppTarget);
+			addClasspathEntries(doc, nodes[0]);
+			addWebAppEntries(doc, nodes[1]);
+			addBaseDeclarations(doc);
 		} catch (XPathExpressionException e) {
 			throw new MojoExecutionException("Internal error in when locating node in the context file: " + e.getMessage(), e);
 		}
@@ -129,8 +228,16 @@ public class JettyConfWriter extends XmlWriter {
 	 * @throws MojoFailureException
 	 */
 	public void writeToStream(OutputStream outputStream, File contextXmlTemplate) throws SAXException, MojoExecutionException, IOException, MojoFailureException {
-		Document doc = modifyContextXmlDoc(parseXmlFile(contextXmlTemplate));
+		long start = report.start();
+		Document doc = parseXmlFile(contextXmlTemplate);
+		report.stop(ExecutionReport.PARSE, start);
+		
+		start = report.start();
+		modifyContextXmlDoc(doc);
+		report.stop(ExecutionReport.INJECT, start);
 		
+		start = report.start();
 		writeDocumentToStream(doc, outputStream);
+		report.stop(ExecutionReport.SERIALIZE, start);
 	}
 }
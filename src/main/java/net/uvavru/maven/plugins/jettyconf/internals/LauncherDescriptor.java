@@ -0,0 +1,123 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact descriptor of a web app context for the jetty-conf-bootstrap
+ * launcher which configures the {@code WebAppContext} directly instead of
+ * applying a context xml file through reflection.<br>
+ *
+ * The descriptor is an UTF-8 text file. The first line is the format version,
+ * every other line is a tab separated key and value(s):
+ *
+ * <pre>
+ * jetty-conf-launcher	1
+ * contextPath	/app
+ * classpath	file:/home/user/.m2/repository/.../a.jar
+ * resource	file:/home/user/workspace/app/src/main/webapp/
+ * property	name	value
+ * </pre>
+ *
+ * Classpath entries and resources keep their order. Backslashes, tabs and
+ * line breaks in the values are escaped as {@code \\}, {@code \t},
+ * {@code \n} and {@code \r}. Readers must reject unknown versions and ignore
+ * unknown keys.
+ *
+ * @author stepan
+ *
+ */
+public class LauncherDescriptor {
+
+	public static final String FORMAT = "jetty-conf-launcher";
+
+	public static final int VERSION = 1;
+
+	private String contextPath;
+	private List<File> classpathFiles;
+	private List<File> webAppFiles;
+	private final Map<String, String> properties = new LinkedHashMap<String, String>();
+
+	public void setContextPath(String contextPath) {
+		this.contextPath = contextPath;
+	}
+
+	public void setClasspathFiles(List<File> classpathFiles) {
+		this.classpathFiles = classpathFiles;
+	}
+
+	public void setWebAppFiles(List<File> webAppFiles) {
+		this.webAppFiles = webAppFiles;
+	}
+
+	public Map<String, String> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * @return content of the descriptor
+	 */
+	public String create() {
+		StringBuilder descriptor = new StringBuilder(FORMAT).append('\t').append(VERSION).append('\n');
+		if (contextPath != null) {
+			line(descriptor, "contextPath", contextPath);
+		}
+		if (classpathFiles != null) {
+			for (File file : classpathFiles) {
+				line(descriptor, "classpath", file.toURI().toString());
+			}
+		}
+		if (webAppFiles != null) {
+			for (File file : webAppFiles) {
+				line(descriptor, "resource", ContextEntries.webAppResource(file));
+			}
+		}
+		for (Map.Entry<String, String> property : properties.entrySet()) {
+			descriptor.append("property\t").append(escape(property.getKey())).append('\t')
+					.append(escape(property.getValue())).append('\n');
+		}
+		return descriptor.toString();
+	}
+
+	private static void line(StringBuilder descriptor, String key, String value) {
+		descriptor.append(key).append('\t').append(escape(value)).append('\n');
+	}
+
+	static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				escaped.append("\\\\");
+				break;
+			case '\t':
+				escaped.append("\\t");
+				break;
+			case '\n':
+				escaped.append("\\n");
+				break;
+			case '\r':
+				escaped.append("\\r");
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Writes the descriptor unless it already has the same content.
+	 *
+	 * @param file
+	 * @return {@code true} if the descriptor was written
+	 * @throws IOException
+	 */
+	public boolean writeIfChanged(File file) throws IOException {
+		return AtomicFileWriter.writeIfChanged(file, create().getBytes("UTF-8"));
+	}
+}
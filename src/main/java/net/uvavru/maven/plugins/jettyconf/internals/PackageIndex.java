@@ -0,0 +1,152 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of packages of the classpath entries in the spirit of the jar
+ * {@code INDEX.LIST}.<br>
+ *
+ * Every classpath entry (its URI as in the context file) is followed by the
+ * slash separated packages it contains and the resources in its root, entries
+ * are separated by an empty line:
+ *
+ * <pre>
+ * JarIndex-Version: 1.0
+ *
+ * file:/home/user/.m2/repository/.../a.jar
+ * org/a
+ * org/a/impl
+ * a.properties
+ * </pre>
+ *
+ * A class loader can then look up a class or a resource in the entries
+ * listing its package only. {@code META-INF} is never listed since all the
+ * entries are searched for it anyway.
+ *
+ * @author stepan
+ *
+ */
+public class PackageIndex {
+
+	static final String HEADER = "JarIndex-Version: 1.0";
+
+	private static final String META_INF = "META-INF";
+
+	private PackageIndex() {
+	}
+
+	/**
+	 * Lists packages and root resources of a jar or a directory.
+	 *
+	 * @param file
+	 * @return sorted packages and root resources, empty if the file doesn't
+	 *         exist
+	 * @throws IOException
+	 */
+	public static List<String> scan(File file) throws IOException {
+		Set<String> packages = new TreeSet<String>();
+		if (file.isDirectory()) {
+			scanDirectory(file, "", packages);
+		} else if (file.isFile()) {
+			scanJar(file, packages);
+		}
+		return new ArrayList<String>(packages);
+	}
+
+	private static void scanJar(File file, Set<String> packages) throws IOException {
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+			while (zipEntries.hasMoreElements()) {
+				ZipEntry zipEntry = zipEntries.nextElement();
+				if (!zipEntry.isDirectory()) {
+					addEntry(zipEntry.getName(), packages);
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private static void scanDirectory(File directory, String path, Set<String> packages) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = path + file.getName();
+			if (file.isDirectory()) {
+				if (!META_INF.equals(name)) {
+					scanDirectory(file, name + "/", packages);
+				}
+			} else {
+				addEntry(name, packages);
+			}
+		}
+	}
+
+	private static void addEntry(String name, Set<String> packages) {
+		if (name.startsWith(META_INF + "/")) {
+			return;
+		}
+		int separator = name.lastIndexOf('/');
+		// resources in the root are listed by their names
+		packages.add(separator < 0 ? name : name.substring(0, separator));
+	}
+
+	/**
+	 * @param classpathFiles
+	 * @param packages
+	 *            packages of the classpath entries in the same order
+	 * @return content of the index
+	 */
+	public static String create(List<File> classpathFiles, List<List<String>> packages) {
+		StringBuilder index = new StringBuilder(HEADER).append('\n');
+		for (int i = 0; i < classpathFiles.size(); ++i) {
+			index.append('\n').append(classpathFiles.get(i).toURI()).append('\n');
+			for (String entryPackage : packages.get(i)) {
+				index.append(entryPackage).append('\n');
+			}
+		}
+		return index.toString();
+	}
+
+	/**
+	 * @param packages
+	 *            as returned by {@link #scan(File)}
+	 * @return single line form for {@link net.uvavru.maven.plugins.jettyconf.types.FileStampCache}
+	 */
+	public static String toCacheValue(List<String> packages) {
+		StringBuilder value = new StringBuilder();
+		for (String entryPackage : packages) {
+			if (value.length() > 0) {
+				value.append('\t');
+			}
+			value.append(entryPackage);
+		}
+		return value.toString();
+	}
+
+	/**
+	 * @param value
+	 *            as returned by {@link #toCacheValue(List)}
+	 * @return
+	 */
+	public static List<String> fromCacheValue(String value) {
+		if (value.length() == 0) {
+			return Collections.emptyList();
+		}
+		List<String> packages = new ArrayList<String>();
+		Collections.addAll(packages, value.split("\t"));
+		return packages;
+	}
+}
@@ -0,0 +1,151 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Processes items either sequentially or concurrently.<br>
+ *
+ * The work is meant to be blocked mostly on the filesystem calls. Virtual
+ * threads are used where available (Java 21+), otherwise a fork-join pool of
+ * the configured parallelism does the work. Either way no more than the
+ * configured number of tasks run at once. Results are always returned in the
+ * order of the items.
+ *
+ * @author stepan
+ *
+ */
+public class ParallelProcessor {
+
+	/**
+	 * Work done for a single item.
+	 *
+	 * @param <T>
+	 *            item type
+	 * @param <R>
+	 *            result type
+	 */
+	public interface Task<T, R> {
+
+		R process(T item) throws MojoExecutionException;
+	}
+
+	/**
+	 * Items processed by a single concurrent task.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static final Method VIRTUAL_EXECUTOR_FACTORY = virtualExecutorFactory();
+
+	private final int parallelism;
+
+	/**
+	 * @param parallelism
+	 *            number of concurrent tasks; {@code 1} means sequential
+	 *            processing, {@code 0} or less the number of available
+	 *            processors
+	 */
+	public ParallelProcessor(int parallelism) {
+		this.parallelism = parallelism > 0 ? parallelism : Runtime
+				.getRuntime().availableProcessors();
+	}
+
+	public boolean isParallel() {
+		return parallelism > 1;
+	}
+
+	/**
+	 * Processes all the items.
+	 *
+	 * @param items
+	 * @param task
+	 * @return results in the order of the items
+	 * @throws MojoExecutionException
+	 *             the first failure of the task
+	 */
+	public <T, R> List<R> process(final List<T> items, final Task<T, R> task)
+			throws MojoExecutionException {
+		if (!isParallel() || items.size() < 2) {
+			List<R> results = new ArrayList<R>(items.size());
+			for (T item : items) {
+				results.add(task.process(item));
+			}
+			return results;
+		}
+
+		final Object[] results = new Object[items.size()];
+		int chunkSize = Math.max(1, items.size() / (parallelism * CHUNKS_PER_THREAD));
+		// virtual threads are not bounded by the executor
+		final Semaphore permits = new Semaphore(parallelism);
+
+		ExecutorService executor = createExecutor();
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int start = 0; start < items.size(); start += chunkSize) {
+				final int from = start;
+				final int to = Math.min(items.size(), start + chunkSize);
+				futures.add(executor.submit(new Callable<Void>() {
+
+					public Void call() throws MojoExecutionException, InterruptedException {
+						permits.acquire();
+						try {
+							for (int i = from; i < to; ++i) {
+								results[i] = task.process(items.get(i));
+							}
+						} finally {
+							permits.release();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while processing artifacts", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof MojoExecutionException) {
+				throw (MojoExecutionException) e.getCause();
+			}
+			throw new MojoExecutionException("Cannot process artifacts: " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		@SuppressWarnings("unchecked")
+		List<R> resultList = (List<R>) Arrays.asList(results);
+		return resultList;
+	}
+
+	private ExecutorService createExecutor() {
+		if (VIRTUAL_EXECUTOR_FACTORY != null) {
+			try {
+				return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+			} catch (Exception e) {
+				// fall back to the fork-join pool
+			}
+		}
+		return new ForkJoinPool(parallelism);
+	}
+
+	private static Method virtualExecutorFactory() {
+		try {
+			return java.util.concurrent.Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
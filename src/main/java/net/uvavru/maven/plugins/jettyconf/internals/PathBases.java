@@ -0,0 +1,176 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base directories the injected entries are emitted relative to.<br>
+ *
+ * Entries usually share a few long prefixes (the local repository, the
+ * reactor root). Each such base is declared once at the beginning of the
+ * context file as a Jetty string object
+ *
+ * <pre>
+ * &lt;New id="jetty.conf-plugin.base.0" class="java.lang.String"&gt;&lt;Arg&gt;&lt;Property name="jetty.conf-plugin.base.0" default="file:/home/user/.m2/repository/"/&gt;&lt;/Arg&gt;&lt;/New&gt;
+ * </pre>
+ *
+ * and the entries refer to it, e.g.
+ * {@code <Ref refid="jetty.conf-plugin.base.0"/>org/example/a/1.0/a-1.0.jar}.
+ * Jetty concatenates the mixed content back into the absolute URI; the
+ * {@code Property} lets the base be relocated when Jetty starts.<br>
+ *
+ * Only bases shared by at least two entries are declared, every entry refers
+ * to the longest base it starts with.
+ *
+ * @author stepan
+ *
+ */
+public class PathBases {
+
+	public static final String ID_PREFIX = "jetty.conf-plugin.base.";
+
+	/**
+	 * Only bases used more times are declared.
+	 */
+	private static final int MIN_USES = 2;
+
+	private final List<String> bases;
+
+	private PathBases(List<String> bases) {
+		this.bases = bases;
+	}
+
+	/**
+	 * @param candidates
+	 *            base directories in the order of their declaration
+	 * @param entryLists
+	 *            all the entries to be emitted
+	 * @return bases actually shared by the entries
+	 */
+	public static PathBases compute(List<File> candidates, List<? extends List<File>> entryLists) {
+		List<String> candidateUris = new ArrayList<String>();
+		for (File candidate : candidates) {
+			String uri = directoryUri(candidate);
+			if (!candidateUris.contains(uri)) {
+				candidateUris.add(uri);
+			}
+		}
+		int[] uses = new int[candidateUris.size()];
+		for (List<File> entries : entryLists) {
+			for (File entry : entries) {
+				int base = findLongest(candidateUris, entry.toURI().toString());
+				if (base >= 0) {
+					++uses[base];
+				}
+			}
+		}
+		List<String> bases = new ArrayList<String>();
+		for (int i = 0; i < uses.length; ++i) {
+			if (uses[i] >= MIN_USES) {
+				bases.add(candidateUris.get(i));
+			}
+		}
+		return new PathBases(bases);
+	}
+
+	private static String directoryUri(File directory) {
+		String uri = directory.getAbsoluteFile().toURI().toString();
+		// the directory doesn't need to exist
+		return uri.endsWith("/") ? uri : uri + "/";
+	}
+
+	private static int findLongest(List<String> uris, String uri) {
+		int longest = -1;
+		for (int i = 0; i < uris.size(); ++i) {
+			String base = uris.get(i);
+			if (uri.startsWith(base) && uri.length() > base.length()
+					&& (longest < 0 || base.length() > uris.get(longest).length())) {
+				longest = i;
+			}
+		}
+		return longest;
+	}
+
+	public boolean isEmpty() {
+		return bases.isEmpty();
+	}
+
+	/**
+	 * @return base URIs in the order of their ids
+	 */
+	public List<String> getBases() {
+		return Collections.unmodifiableList(bases);
+	}
+
+	/**
+	 * @param index
+	 * @return id (and the Jetty property name) of the base
+	 */
+	public static String getId(int index) {
+		return ID_PREFIX + index;
+	}
+
+	/**
+	 * @param uri
+	 * @return index of the base the uri is emitted relative to or {@code -1}
+	 */
+	public int findBase(String uri) {
+		return findLongest(bases, uri);
+	}
+
+	/**
+	 * @param uri
+	 * @param index
+	 *            as returned by {@link #findBase(String)}
+	 * @return the uri without its base
+	 */
+	public String relativize(String uri, int index) {
+		return uri.substring(bases.get(index).length());
+	}
+
+	/**
+	 * @param index
+	 * @return declaration of the base
+	 */
+	public String declarationXml(int index) {
+		return "<New id=\"" + getId(index) + "\" class=\"java.lang.String\"><Arg><Property name=\""
+				+ getId(index) + "\" default=\"" + attribute(bases.get(index)) + "\"/></Arg></New>";
+	}
+
+	/**
+	 * @return declarations of all the bases, each on its own line
+	 */
+	public String declarationsXml() {
+		StringBuilder declarations = new StringBuilder();
+		for (int i = 0; i < bases.size(); ++i) {
+			declarations.append('\n').append(declarationXml(i));
+		}
+		return declarations.toString();
+	}
+
+	/**
+	 * @param index
+	 * @return reference to the base
+	 */
+	public static String referenceXml(int index) {
+		return "<Ref refid=\"" + getId(index) + "\"/>";
+	}
+
+	/**
+	 * @param uri
+	 * @return the uri as xml content, relative to its base if any
+	 */
+	public String toXml(String uri) {
+		int base = findBase(uri);
+		if (base < 0) {
+			return ContextEntries.escapeXml(uri);
+		}
+		return referenceXml(base) + ContextEntries.escapeXml(relativize(uri, base));
+	}
+
+	private static String attribute(String value) {
+		return ContextEntries.escapeXml(value).replace("\"", "&quot;");
+	}
+}
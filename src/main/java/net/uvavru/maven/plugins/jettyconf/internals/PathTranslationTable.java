@@ -0,0 +1,263 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled list of path translation patterns and their replacements.<br>
+ *
+ * Literal prefixes of the patterns (usually the local repository or the
+ * workspace root) are indexed in a prefix trie so that each path is matched
+ * only against the patterns which can possibly match it. Only the non-literal
+ * remainder of such patterns is evaluated as a regular expression.<br>
+ *
+ * The first pattern (in the configuration order) matching the whole path
+ * wins. Tables are immutable and cached per configuration.
+ *
+ * @author stepan
+ *
+ */
+public class PathTranslationTable {
+
+	private static final ConcurrentMap<String, PathTranslationTable> TABLES = new ConcurrentHashMap<String, PathTranslationTable>();
+
+	private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+	private final List<Pattern> patterns = new ArrayList<Pattern>();
+	private final List<String> replacements = new ArrayList<String>();
+	private final List<String> prefixes = new ArrayList<String>();
+	private final List<Pattern> remainders = new ArrayList<Pattern>();
+
+	private final TrieNode root = new TrieNode();
+	private final BitSet unprefixed = new BitSet();
+
+	/**
+	 * Returns a table compiled from comma separated lists of patterns and
+	 * replacements. Only pairs with both the pattern and the replacement are
+	 * considered.
+	 *
+	 * @param patterns
+	 * @param replacements
+	 * @return
+	 */
+	public static PathTranslationTable compile(String patterns, String replacements) {
+		String key = patterns + '\u0000' + replacements;
+		PathTranslationTable table = TABLES.get(key);
+		if (table == null) {
+			table = new PathTranslationTable(patterns.split(","), replacements.split(","));
+			PathTranslationTable previous = TABLES.putIfAbsent(key, table);
+			if (previous != null) {
+				table = previous;
+			}
+		}
+		return table;
+	}
+
+	private PathTranslationTable(String[] patternStrings, String[] replacementStrings) {
+		for (int i = 0; i < patternStrings.length && i < replacementStrings.length; ++i) {
+			String patternString = patternStrings[i];
+			patterns.add(Pattern.compile(patternString));
+			replacements.add(replacementStrings[i]);
+
+			int prefixEnd = literalPrefixEnd(patternString);
+			String prefix = unescapeLiteral(patternString.substring(0, prefixEnd));
+			String remainder = patternString.substring(prefixEnd);
+			prefixes.add(prefix);
+			// \G would match at the start of the region rather than of the path
+			if (prefix.length() > 0 && remainder.indexOf("\\G") < 0) {
+				remainders.add(Pattern.compile(remainder));
+			} else {
+				remainders.add(null);
+			}
+
+			if (prefix.length() == 0) {
+				unprefixed.set(i);
+			} else {
+				root.insert(prefix, i);
+			}
+		}
+	}
+
+	/**
+	 * @return number of pattern and replacement pairs
+	 */
+	public int size() {
+		return patterns.size();
+	}
+
+	/**
+	 * Finds the first pattern matching the path.
+	 *
+	 * @param path
+	 * @return index of the pattern or {@code -1} if none matches
+	 */
+	public int indexOf(String path) {
+		BitSet candidates = (BitSet) unprefixed.clone();
+		root.collect(path, candidates);
+
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			if (matches(i, path)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean matches(int index, String path) {
+		Pattern remainder = remainders.get(index);
+		if (remainder == null) {
+			return patterns.get(index).matcher(path).matches();
+		}
+		// the trie has already verified the prefix; lookarounds and word
+		// boundaries see it and anchors don't match at the region start
+		Matcher matcher = remainder.matcher(path);
+		matcher.region(prefixes.get(index).length(), path.length());
+		matcher.useTransparentBounds(true).useAnchoringBounds(false);
+		return matcher.matches();
+	}
+
+	/**
+	 * Translates the path with the pattern at the index.
+	 *
+	 * @param index
+	 *            as returned by {@link #indexOf(String)}
+	 * @param path
+	 * @return
+	 */
+	public File translate(int index, String path) {
+		return new File(patterns.get(index).matcher(path).replaceAll(replacements.get(index)));
+	}
+
+	/**
+	 * Finds the end of the literal prefix of the regular expression. Patterns
+	 * with an alternation have no prefix.
+	 *
+	 * @param pattern
+	 * @return
+	 */
+	static int literalPrefixEnd(String pattern) {
+		for (int i = 0; i < pattern.length(); ++i) {
+			char c = pattern.charAt(i);
+			if (c == '\\') {
+				++i;
+			} else if (c == '|') {
+				return 0;
+			}
+		}
+
+		int end = 0;
+		int i = 0;
+		while (i < pattern.length()) {
+			char c = pattern.charAt(i);
+			int next;
+			if (c == '\\') {
+				if (i + 1 >= pattern.length()) {
+					break;
+				}
+				char escaped = pattern.charAt(i + 1);
+				if (Character.isLetterOrDigit(escaped)) {
+					// character classes, back references, \Q..\E quoting
+					break;
+				}
+				next = i + 2;
+			} else if (METACHARACTERS.indexOf(c) >= 0) {
+				break;
+			} else {
+				next = i + 1;
+			}
+			if (next < pattern.length() && "?*+{".indexOf(pattern.charAt(next)) >= 0) {
+				// the quantified character is not mandatory
+				break;
+			}
+			end = next;
+			i = next;
+		}
+		return end;
+	}
+
+	private static String unescapeLiteral(String literal) {
+		if (literal.indexOf('\\') < 0) {
+			return literal;
+		}
+		StringBuilder builder = new StringBuilder(literal.length());
+		for (int i = 0; i < literal.length(); ++i) {
+			char c = literal.charAt(i);
+			if (c == '\\') {
+				c = literal.charAt(++i);
+			}
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @param index
+	 * @return whether only the non-literal remainder of the pattern is
+	 *         evaluated
+	 */
+	boolean isRemainderMatched(int index) {
+		return remainders.get(index) != null;
+	}
+
+	/**
+	 * Node of the prefix trie.
+	 */
+	private static class TrieNode {
+
+		private char[] keys = new char[0];
+		private TrieNode[] children = new TrieNode[0];
+		private BitSet terminals;
+
+		void insert(String prefix, int index) {
+			TrieNode node = this;
+			for (int i = 0; i < prefix.length(); ++i) {
+				node = node.childOrCreate(prefix.charAt(i));
+			}
+			if (node.terminals == null) {
+				node.terminals = new BitSet();
+			}
+			node.terminals.set(index);
+		}
+
+		void collect(String path, BitSet candidates) {
+			TrieNode node = this;
+			for (int i = 0; i < path.length() && node != null; ++i) {
+				node = node.child(path.charAt(i));
+				if (node != null && node.terminals != null) {
+					candidates.or(node.terminals);
+				}
+			}
+		}
+
+		private TrieNode child(char key) {
+			for (int i = 0; i < keys.length; ++i) {
+				if (keys[i] == key) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private TrieNode childOrCreate(char key) {
+			TrieNode child = child(key);
+			if (child == null) {
+				child = new TrieNode();
+				char[] newKeys = new char[keys.length + 1];
+				System.arraycopy(keys, 0, newKeys, 0, keys.length);
+				newKeys[keys.length] = key;
+				TrieNode[] newChildren = new TrieNode[children.length + 1];
+				System.arraycopy(children, 0, newChildren, 0, children.length);
+				newChildren[children.length] = child;
+				keys = newKeys;
+				children = newChildren;
+			}
+			return child;
+		}
+	}
+}
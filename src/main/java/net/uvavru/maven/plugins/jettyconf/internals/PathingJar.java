@@ -0,0 +1,94 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Manifest-only jar whose {@code Class-Path} attribute lists the classpath
+ * entries.<br>
+ *
+ * The jar content depends only on the entries (the entry timestamp is fixed)
+ * so that it's rewritten only when the classpath changes.
+ *
+ * @author stepan
+ *
+ */
+public class PathingJar {
+
+	/**
+	 * 2000-01-01, any fixed time makes the jar reproducible.
+	 */
+	private static final long ENTRY_TIME = 946684800000L;
+
+	private PathingJar() {
+	}
+
+	/**
+	 * @param classpathFiles
+	 * @return content of the jar
+	 * @throws IOException
+	 */
+	public static byte[] create(List<File> classpathFiles) throws IOException {
+		StringBuilder classPath = new StringBuilder();
+		for (File file : classpathFiles) {
+			if (classPath.length() > 0) {
+				classPath.append(' ');
+			}
+			classPath.append(classPathUri(file));
+		}
+
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.put(new Attributes.Name("Created-By"), "jetty-conf-maven-plugin");
+		attributes.put(Attributes.Name.CLASS_PATH, classPath.toString());
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		JarOutputStream jarOutputStream = new JarOutputStream(content);
+		ZipEntry entry = new ZipEntry(JarFile.MANIFEST_NAME);
+		entry.setTime(ENTRY_TIME);
+		jarOutputStream.putNextEntry(entry);
+		manifest.write(jarOutputStream);
+		jarOutputStream.closeEntry();
+		jarOutputStream.close();
+		return content.toByteArray();
+	}
+
+	/**
+	 * {@link File#toURI()} ends with a slash only if the directory exists,
+	 * translated directories or not yet compiled output directories would be
+	 * treated as jars by the {@code URLClassLoader}. Entries other than jars
+	 * and zips are therefore always directories.
+	 *
+	 * @param file
+	 * @return URI of the classpath entry
+	 */
+	static String classPathUri(File file) {
+		String uri = file.toURI().toString();
+		String name = file.getName().toLowerCase(Locale.ENGLISH);
+		if (!uri.endsWith("/") && !name.endsWith(".jar") && !name.endsWith(".zip")) {
+			uri += "/";
+		}
+		return uri;
+	}
+
+	/**
+	 * Writes the jar unless it already lists the same entries.
+	 *
+	 * @param jarFile
+	 * @param classpathFiles
+	 * @return {@code true} if the jar was written
+	 * @throws IOException
+	 */
+	public static boolean writeIfChanged(File jarFile, List<File> classpathFiles) throws IOException {
+		return AtomicFileWriter.writeIfChanged(jarFile, create(classpathFiles));
+	}
+}
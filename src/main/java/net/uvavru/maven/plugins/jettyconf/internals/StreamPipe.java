@@ -0,0 +1,190 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Bounded in-memory pipe whose output is produced by a separate thread.<br>
+ *
+ * Unlike {@link java.io.PipedInputStream}, the reader is woken up as soon as
+ * data are available. The producer fills at most the pipe capacity ahead of
+ * the reader so that the content never needs to be in memory as a whole.
+ *
+ * @author stepan
+ *
+ */
+public class StreamPipe {
+
+	/**
+	 * Writes the content into the pipe.
+	 */
+	public interface Producer {
+
+		void produce(OutputStream outputStream) throws Exception;
+	}
+
+	private static final int CAPACITY = 64 * 1024;
+
+	private final byte[] buffer = new byte[CAPACITY];
+	private int head;
+	private int size;
+	private boolean writerClosed;
+	private boolean readerClosed;
+
+	private final Thread thread;
+	private volatile Throwable failure;
+
+	private final InputStream inputStream = new InputStream() {
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			synchronized (buffer) {
+				while (size == 0 && !writerClosed) {
+					await();
+				}
+				if (size == 0) {
+					return -1;
+				}
+				int read = Math.min(length, Math.min(size, CAPACITY - head));
+				System.arraycopy(buffer, head, bytes, offset, read);
+				head = (head + read) % CAPACITY;
+				size -= read;
+				buffer.notifyAll();
+				return read;
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (buffer) {
+				readerClosed = true;
+				buffer.notifyAll();
+			}
+		}
+	};
+
+	private final OutputStream outputStream = new OutputStream() {
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			synchronized (buffer) {
+				while (length > 0) {
+					while (size == CAPACITY && !readerClosed) {
+						await();
+					}
+					if (readerClosed) {
+						throw new IOException("Pipe closed by the reader");
+					}
+					int tail = (head + size) % CAPACITY;
+					int written = Math.min(length, Math.min(CAPACITY - size, CAPACITY - tail));
+					System.arraycopy(bytes, offset, buffer, tail, written);
+					size += written;
+					offset += written;
+					length -= written;
+					buffer.notifyAll();
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (buffer) {
+				writerClosed = true;
+				buffer.notifyAll();
+			}
+		}
+	};
+
+	/**
+	 * Starts the producer.
+	 *
+	 * @param producer
+	 * @param name
+	 *            name of the producer thread
+	 */
+	public StreamPipe(final Producer producer, String name) {
+		thread = new Thread(new Runnable() {
+
+			public void run() {
+				try {
+					producer.produce(outputStream);
+				} catch (Throwable e) {
+					failure = e;
+				} finally {
+					IOUtil.close(outputStream);
+				}
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void await() throws InterruptedIOException {
+		try {
+			buffer.wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the pipe");
+		}
+	}
+
+	/**
+	 * @return the content produced
+	 */
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/**
+	 * Waits for the producer to finish. The content must have been read
+	 * completely.
+	 *
+	 * @throws Exception
+	 *             the failure of the producer, the content is then incomplete
+	 */
+	public void join() throws Exception {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while producing the content", e);
+		}
+		Throwable producerFailure = failure;
+		if (producerFailure instanceof Exception) {
+			throw (Exception) producerFailure;
+		} else if (producerFailure != null) {
+			throw new MojoExecutionException("Cannot produce the content: " + producerFailure.getMessage(), producerFailure);
+		}
+	}
+
+	/**
+	 * Stops the producer, the content is not needed anymore.
+	 */
+	public void cancel() {
+		IOUtil.close(inputStream);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
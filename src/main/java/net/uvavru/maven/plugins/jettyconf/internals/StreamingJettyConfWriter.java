@@ -0,0 +1,127 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Jetty Context xml file configuration writer which streams the template.
+ * <br>
+ * 
+ * The template is copied through as is, classpath entries and web app
+ * resources are spliced into the target elements as they stream past. Unlike
+ * {@link JettyConfWriter}, the template formatting including the xml
+ * declaration and the DOCTYPE is preserved and the memory consumption doesn't
+ * depend on the template size.<br>
+ * 
+ * @author stepan
+ *
+ */
+public class StreamingJettyConfWriter implements ContextXmlWriter {
+
+	private final List<File> classpathFiles;
+	private final List<File> webAppFiles;
+	private final ExecutionReport report;
+	private InjectionTarget classpathTarget = InjectionTarget.CLASSPATH;
+	private InjectionTarget webAppTarget = InjectionTarget.WEBAPP;
+	private PathBases bases;
+
+	public StreamingJettyConfWriter(List<File> classpathFiles, List<File> webAppFiles) {
+		this(classpathFiles, webAppFiles, new ExecutionReport());
+	}
+
+	/**
+	 * @param classpathFiles
+	 * @param webAppFiles
+	 * @param report
+	 *            receives the time of the whole pass; parsing, injection and
+	 *            serialization cannot be told apart when streaming
+	 */
+	public StreamingJettyConfWriter(List<File> classpathFiles, List<File> webAppFiles, ExecutionReport report) {
+		this.classpathFiles = classpathFiles;
+		this.webAppFiles = webAppFiles;
+		this.report = report;
+	}
+
+	/**
+	 * Only {@link InjectionTarget#isSimple() simple} targets are supported
+	 * since the template is never turned into a tree.
+	 */
+	public void setInjectionTargets(InjectionTarget classpathTarget, InjectionTarget webAppTarget)
+			throws MojoExecutionException {
+		for (InjectionTarget target : Arrays.asList(classpathTarget, webAppTarget)) {
+			if (!target.isSimple()) {
+				throw new MojoExecutionException("Injection target '" + target
+						+ "' is not supported by the stream engine, use the //Element[@attribute=\"value\"] form"
+						+ " or the dom engine");
+			}
+		}
+		this.classpathTarget = classpathTarget;
+		this.webAppTarget = webAppTarget;
+	}
+
+	public void setPathBases(PathBases bases) {
+		this.bases = bases;
+	}
+
+	public void writeToStream(OutputStream outputStream, File contextXmlTemplate)
+			throws IOException, MojoFailureException {
+		long start = report.start();
+		InputStream inputStream = new BufferedInputStream(new FileInputStream(contextXmlTemplate));
+		try {
+			String encoding = TemplateScanner.detectEncoding(inputStream);
+
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, encoding));
+
+			TemplateScanner scanner = new TemplateScanner(Arrays.asList(
+					classpathTarget, webAppTarget));
+			scanner.scan(new InputStreamReader(inputStream, encoding), new TemplateSink() {
+
+				public void text(char[] chars, int offset, int length) throws IOException {
+					writer.write(chars, offset, length);
+				}
+
+				public void text(String text) throws IOException {
+					writer.write(text);
+				}
+
+				public void declarations() throws IOException {
+					if (bases != null) {
+						writer.write(bases.declarationsXml());
+					}
+				}
+
+				public void slot(InjectionTarget target) throws IOException {
+					writeSlot(target, writer);
+				}
+			});
+
+			writer.flush();
+			outputStream.close();
+		} finally {
+			IOUtil.close(inputStream);
+			report.stop(ExecutionReport.INJECT, start);
+		}
+	}
+
+	private void writeSlot(InjectionTarget target, Writer writer) throws IOException {
+		if (target == classpathTarget) {
+			writer.write(ContextEntries.classpathXml(classpathFiles, bases));
+		} else if (target == webAppTarget) {
+			writer.write(ContextEntries.webAppItemsXml(webAppFiles, bases));
+		}
+	}
+}
@@ -0,0 +1,400 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Streaming scanner of Jetty context xml templates.<br>
+ *
+ * The template is copied into the {@link TemplateSink} verbatim. Whenever an
+ * end tag of an {@link InjectionTarget} is reached, a slot is reported right
+ * in front of it. Declarations are reported right after the start tag of the
+ * document element. Only the markup is tokenized, nothing is parsed into a tree
+ * and so the memory consumption doesn't depend on the template size.<br>
+ *
+ * Note that the scanner doesn't validate the template.
+ *
+ * @author stepan
+ *
+ */
+public class TemplateScanner {
+
+	private static final Pattern ENCODING_PATTERN = Pattern
+			.compile("^<\\?xml[^>]*encoding\\s*=\\s*[\"']([A-Za-z0-9._:-]+)[\"']");
+
+	private static final int PROLOG_LENGTH = 256;
+
+	private final List<InjectionTarget> targets;
+
+	private final char[] buffer = new char[8192];
+	private int position;
+	private int limit;
+	private Reader reader;
+
+	public TemplateScanner(List<InjectionTarget> targets) {
+		this.targets = targets;
+	}
+
+	/**
+	 * Detects encoding of the xml document according to its BOM or xml
+	 * declaration.<br>
+	 * The stream must support marks and is reset to its beginning.
+	 *
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	public static String detectEncoding(InputStream inputStream) throws IOException {
+		byte[] prolog = new byte[PROLOG_LENGTH];
+		inputStream.mark(PROLOG_LENGTH);
+		int length = 0;
+		int read;
+		while (length < PROLOG_LENGTH
+				&& (read = inputStream.read(prolog, length, PROLOG_LENGTH - length)) != -1) {
+			length += read;
+		}
+		inputStream.reset();
+
+		if (length >= 2 && (prolog[0] & 0xff) == 0xfe && (prolog[1] & 0xff) == 0xff) {
+			return "UTF-16BE";
+		}
+		if (length >= 2 && (prolog[0] & 0xff) == 0xff && (prolog[1] & 0xff) == 0xfe) {
+			return "UTF-16LE";
+		}
+		int offset = 0;
+		if (length >= 3 && (prolog[0] & 0xff) == 0xef && (prolog[1] & 0xff) == 0xbb
+				&& (prolog[2] & 0xff) == 0xbf) {
+			offset = 3;
+		}
+		Matcher matcher = ENCODING_PATTERN.matcher(new String(prolog, offset,
+				length - offset, "ISO-8859-1"));
+		if (matcher.find()) {
+			return matcher.group(1);
+		}
+		return "UTF-8";
+	}
+
+	/**
+	 * Scans the whole template.
+	 *
+	 * @param templateReader
+	 * @param sink
+	 * @throws IOException
+	 * @throws MojoFailureException
+	 *             if any of the targets is missing in the template
+	 */
+	public void scan(Reader templateReader, TemplateSink sink)
+			throws IOException, MojoFailureException {
+		reader = templateReader;
+		position = 0;
+		limit = 0;
+
+		int[] openDepths = new int[targets.size()];
+		boolean[] found = new boolean[targets.size()];
+		for (int i = 0; i < openDepths.length; ++i) {
+			openDepths[i] = -1;
+		}
+		int depth = 0;
+		boolean rootStarted = false;
+
+		StringBuilder markup = new StringBuilder();
+		while (fill()) {
+			int start = position;
+			while (position < limit && buffer[position] != '<') {
+				++position;
+			}
+			if (position > start) {
+				sink.text(buffer, start, position - start);
+			}
+			if (position == limit) {
+				continue;
+			}
+
+			markup.setLength(0);
+			readMarkup(markup);
+			String tag = markup.toString();
+
+			if (tag.startsWith("</")) {
+				for (int i = 0; i < openDepths.length; ++i) {
+					if (openDepths[i] == depth) {
+						sink.slot(targets.get(i));
+						openDepths[i] = -1;
+					}
+				}
+				sink.text(tag);
+				--depth;
+			} else if (tag.startsWith("<!") || tag.startsWith("<?")) {
+				sink.text(tag);
+			} else {
+				boolean selfClosing = tag.endsWith("/>");
+				String name = elementName(tag);
+				InjectionTarget target = null;
+				for (int i = 0; i < targets.size(); ++i) {
+					if (!found[i] && matches(targets.get(i), name, tag)) {
+						found[i] = true;
+						target = targets.get(i);
+						if (!selfClosing) {
+							openDepths[i] = depth + 1;
+						}
+						break;
+					}
+				}
+				if (target != null && selfClosing) {
+					// expand the element so that there is a room for the
+					// content
+					sink.text(tag.substring(0, tag.length() - 2) + ">");
+					sink.slot(target);
+					sink.text("</" + name + ">");
+				} else {
+					sink.text(tag);
+					if (!selfClosing) {
+						if (!rootStarted) {
+							sink.declarations();
+						}
+						++depth;
+					}
+				}
+				rootStarted = true;
+			}
+		}
+
+		for (int i = 0; i < found.length; ++i) {
+			if (!found[i]) {
+				throw new MojoFailureException("Cannot find xpath expression '"
+						+ targets.get(i).getExpression()
+						+ "' in the xml template file.");
+			}
+		}
+	}
+
+	private boolean fill() throws IOException {
+		if (position < limit) {
+			return true;
+		}
+		limit = reader.read(buffer);
+		position = 0;
+		if (limit == -1) {
+			limit = 0;
+			return false;
+		}
+		return true;
+	}
+
+	private int next() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buffer[position++];
+	}
+
+	/**
+	 * Reads a markup starting with '&lt;' at the current position.
+	 *
+	 * @param markup
+	 * @throws IOException
+	 */
+	private void readMarkup(StringBuilder markup) throws IOException {
+		markup.append((char) next());
+		int c = next();
+		if (c == -1) {
+			return;
+		}
+		markup.append((char) c);
+
+		if (c == '?') {
+			readUntil(markup, "?>");
+		} else if (c == '!') {
+			readBang(markup);
+		} else {
+			readTag(markup);
+		}
+	}
+
+	/**
+	 * Reads a comment, a CDATA section or a declaration. The '&lt;!' has been
+	 * read already.
+	 */
+	private void readBang(StringBuilder markup) throws IOException {
+		int c = next();
+		if (c == -1) {
+			return;
+		}
+		markup.append((char) c);
+		if (c == '[') {
+			readUntil(markup, "]]>");
+			return;
+		}
+		if (c == '-') {
+			c = next();
+			if (c == -1) {
+				return;
+			}
+			markup.append((char) c);
+			if (c == '-') {
+				readUntil(markup, "-->");
+				return;
+			}
+		}
+		readDeclaration(markup);
+	}
+
+	/**
+	 * Reads the rest of a declaration. The last character read is already in
+	 * the markup.
+	 */
+	private void readDeclaration(StringBuilder markup) throws IOException {
+		// DOCTYPE might contain an internal subset with nested markup
+		int brackets = 0;
+		char quote = 0;
+		int c = markup.charAt(markup.length() - 1);
+		while (true) {
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = (char) c;
+			} else if (c == '[') {
+				++brackets;
+			} else if (c == ']') {
+				--brackets;
+			} else if (c == '>' && brackets <= 0) {
+				return;
+			}
+			c = next();
+			if (c == -1) {
+				return;
+			}
+			markup.append((char) c);
+		}
+	}
+
+	private void readTag(StringBuilder markup) throws IOException {
+		char quote = 0;
+		int c = markup.charAt(markup.length() - 1);
+		while (true) {
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = (char) c;
+			} else if (c == '>') {
+				return;
+			}
+			c = next();
+			if (c == -1) {
+				return;
+			}
+			markup.append((char) c);
+		}
+	}
+
+	/**
+	 * Reads until the markup ends with the {@code terminator}.
+	 */
+	private void readUntil(StringBuilder markup, String terminator) throws IOException {
+		while (!endsWith(markup, terminator)) {
+			int c = next();
+			if (c == -1) {
+				return;
+			}
+			markup.append((char) c);
+		}
+	}
+
+	private static boolean endsWith(StringBuilder builder, String suffix) {
+		int offset = builder.length() - suffix.length();
+		if (offset < 0) {
+			return false;
+		}
+		for (int i = 0; i < suffix.length(); ++i) {
+			if (builder.charAt(offset + i) != suffix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String elementName(String tag) {
+		int end = 1;
+		while (end < tag.length()) {
+			char c = tag.charAt(end);
+			if (Character.isWhitespace(c) || c == '/' || c == '>') {
+				break;
+			}
+			++end;
+		}
+		return tag.substring(1, end);
+	}
+
+	private static boolean matches(InjectionTarget target, String name, String tag) {
+		if (!target.getElementName().equals(name)) {
+			return false;
+		}
+		String value = attributeValue(tag, name.length() + 1,
+				target.getAttributeName());
+		return target.getAttributeValue().equals(value);
+	}
+
+	/**
+	 * Finds a value of the attribute in the start tag.
+	 *
+	 * @param tag
+	 * @param from
+	 *            position after the element name
+	 * @param attributeName
+	 * @return the value or {@code null} if there is no such attribute
+	 */
+	static String attributeValue(String tag, int from, String attributeName) {
+		int i = from;
+		int length = tag.length();
+		while (i < length) {
+			while (i < length && !isNameChar(tag.charAt(i))) {
+				++i;
+			}
+			int nameStart = i;
+			while (i < length && isNameChar(tag.charAt(i))) {
+				++i;
+			}
+			String name = tag.substring(nameStart, i);
+			while (i < length && Character.isWhitespace(tag.charAt(i))) {
+				++i;
+			}
+			if (i >= length || tag.charAt(i) != '=') {
+				continue;
+			}
+			++i;
+			while (i < length && Character.isWhitespace(tag.charAt(i))) {
+				++i;
+			}
+			if (i >= length) {
+				break;
+			}
+			char quote = tag.charAt(i);
+			if (quote != '"' && quote != '\'') {
+				continue;
+			}
+			int valueEnd = tag.indexOf(quote, i + 1);
+			if (valueEnd == -1) {
+				break;
+			}
+			if (name.equals(attributeName)) {
+				return tag.substring(i + 1, valueEnd);
+			}
+			i = valueEnd + 1;
+		}
+		return null;
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '-'
+				|| c == '.';
+	}
+}
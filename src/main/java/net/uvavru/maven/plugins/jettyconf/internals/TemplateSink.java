@@ -0,0 +1,46 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.IOException;
+
+/**
+ * Receives the content of a template scanned by {@link TemplateScanner}.
+ *
+ * @author stepan
+ *
+ */
+public interface TemplateSink {
+
+	/**
+	 * Verbatim template content.
+	 *
+	 * @param chars
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	void text(char[] chars, int offset, int length) throws IOException;
+
+	/**
+	 * Verbatim template content.
+	 *
+	 * @param text
+	 * @throws IOException
+	 */
+	void text(String text) throws IOException;
+
+	/**
+	 * Position right after the start tag of the document element where
+	 * declarations used by the dynamic content belong to.
+	 *
+	 * @throws IOException
+	 */
+	void declarations() throws IOException;
+
+	/**
+	 * Position where the dynamic content of the {@code target} belongs to.
+	 *
+	 * @param target
+	 * @throws IOException
+	 */
+	void slot(InjectionTarget target) throws IOException;
+}
@@ -0,0 +1,278 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.shared.filtering.FilteringUtils;
+
+/**
+ * Replaces tokens of all the delimiters in a single pass.<br>
+ *
+ * Delimiters are specified as for the maven-filtering, i.e.
+ * {@code beginToken*endToken} or a single token used on both ends. The text
+ * is scanned once; at each position the begin tokens are tried in the order
+ * of the delimiters and a token ends on the same line. The expression is
+ * looked up by the {@link ValueLookup}, the value is filtered recursively,
+ * escaped if it is a windows path (see {@link #TokenFilter(Collection, ValueLookup, boolean)})
+ * and remembered for the other occurrences. Unknown expressions are kept as
+ * they are, the scanning continues after the token. An expression referring
+ * to itself fails the filtering as it does with the maven-filtering.
+ *
+ * @author stepan
+ *
+ */
+public class TokenFilter {
+
+	/**
+	 * Source of the values of the expressions.
+	 */
+	public interface ValueLookup {
+
+		/**
+		 * @param expression
+		 * @return the value or {@code null} if unknown
+		 */
+		String lookup(String expression);
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final String[] beginTokens;
+	private final String[] endTokens;
+	/**
+	 * Whether a latin-1 character starts any begin token.
+	 */
+	private final boolean[] startChars = new boolean[256];
+	private final String otherStartChars;
+
+	private final ValueLookup lookup;
+	private final boolean escapeWindowsPaths;
+
+	private final Map<String, String> values = new HashMap<String, String>();
+	private final Set<String> resolving = new HashSet<String>();
+
+	/**
+	 * @param delimiters
+	 *            delimiter specifications, see {@link #isSupported(Collection)}
+	 * @param lookup
+	 * @param escapeWindowsPaths
+	 *            whether to escape backslashes of values looking like windows
+	 *            paths as the maven-filtering does
+	 */
+	public TokenFilter(Collection<String> delimiters, ValueLookup lookup, boolean escapeWindowsPaths) {
+		if (!isSupported(delimiters)) {
+			throw new IllegalArgumentException("Unsupported delimiters: " + delimiters);
+		}
+		List<String> begins = new ArrayList<String>();
+		List<String> ends = new ArrayList<String>();
+		StringBuilder others = new StringBuilder();
+		for (String delimiter : delimiters) {
+			int star = delimiter.indexOf('*');
+			String begin = star < 0 ? delimiter : delimiter.substring(0, star);
+			begins.add(begin);
+			ends.add(star < 0 ? delimiter : delimiter.substring(star + 1));
+
+			char first = begin.charAt(0);
+			if (first < startChars.length) {
+				startChars[first] = true;
+			} else {
+				others.append(first);
+			}
+		}
+		this.beginTokens = begins.toArray(new String[begins.size()]);
+		this.endTokens = ends.toArray(new String[ends.size()]);
+		this.otherStartChars = others.toString();
+		this.lookup = lookup;
+		this.escapeWindowsPaths = escapeWindowsPaths;
+	}
+
+	/**
+	 * @param delimiters
+	 * @return whether all the delimiters have non-empty single line tokens
+	 */
+	public static boolean isSupported(Collection<String> delimiters) {
+		if (delimiters == null || delimiters.isEmpty()) {
+			return false;
+		}
+		for (String delimiter : delimiters) {
+			if (delimiter == null || delimiter.length() == 0 || delimiter.indexOf('\n') >= 0
+					|| delimiter.indexOf('\r') >= 0) {
+				return false;
+			}
+			int star = delimiter.indexOf('*');
+			if (star == 0 || star == delimiter.length() - 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Filters the whole reader into the writer. Only complete lines are
+	 * filtered at a time, the content is never held in memory as a whole.
+	 *
+	 * @param reader
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void filter(Reader reader, Writer writer) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		StringBuilder pending = new StringBuilder(BUFFER_SIZE);
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			pending.append(buffer, 0, read);
+			int lines = lastLineBreak(pending) + 1;
+			if (lines > 0) {
+				filter(pending, lines, writer);
+				pending.delete(0, lines);
+			}
+		}
+		filter(pending, pending.length(), writer);
+	}
+
+	/**
+	 * @param text
+	 * @return the filtered text
+	 */
+	public String filter(String text) {
+		if (!hasStartChar(text)) {
+			return text;
+		}
+		StringWriter writer = new StringWriter(text.length());
+		try {
+			filter(text, text.length(), writer);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+
+	private void filter(CharSequence text, int length, Writer writer) throws IOException {
+		int copied = 0;
+		int i = 0;
+		while (i < length) {
+			int delimiter = isStartChar(text.charAt(i)) ? matchBegin(text, i, length) : -1;
+			if (delimiter < 0) {
+				++i;
+				continue;
+			}
+			int expressionStart = i + beginTokens[delimiter].length();
+			int expressionEnd = findEnd(text, endTokens[delimiter], expressionStart, length);
+			if (expressionEnd < 0) {
+				++i;
+				continue;
+			}
+			int tokenEnd = expressionEnd + endTokens[delimiter].length();
+			String value = resolve(text.subSequence(expressionStart, expressionEnd).toString());
+			if (value != null) {
+				writer.append(text, copied, i);
+				writer.write(value);
+				copied = tokenEnd;
+			}
+			i = tokenEnd;
+		}
+		writer.append(text, copied, length);
+	}
+
+	/**
+	 * @param expression
+	 * @return the memoized value or {@code null} if the expression is unknown
+	 * @throws IllegalArgumentException
+	 *             if the expression refers to itself
+	 */
+	private String resolve(String expression) {
+		String value = values.get(expression);
+		if (value != null || values.containsKey(expression)) {
+			return value;
+		}
+		if (!resolving.add(expression)) {
+			throw new IllegalArgumentException("Detected a recursive expression cycle in '" + expression + "'");
+		}
+		try {
+			value = lookup.lookup(expression);
+			if (value != null) {
+				value = filter(value);
+				if (escapeWindowsPaths) {
+					value = FilteringUtils.escapeWindowsPath(value);
+				}
+			}
+		} finally {
+			resolving.remove(expression);
+		}
+		values.put(expression, value);
+		return value;
+	}
+
+	private boolean isStartChar(char c) {
+		return c < startChars.length ? startChars[c] : otherStartChars.indexOf(c) >= 0;
+	}
+
+	private boolean hasStartChar(String text) {
+		for (int i = 0; i < text.length(); ++i) {
+			if (isStartChar(text.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return index of the first delimiter whose begin token is at the
+	 *         position or {@code -1}
+	 */
+	private int matchBegin(CharSequence text, int position, int length) {
+		for (int d = 0; d < beginTokens.length; ++d) {
+			if (regionMatches(text, position, length, beginTokens[d])) {
+				return d;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return position of the end token on the same line or {@code -1}
+	 */
+	private static int findEnd(CharSequence text, String endToken, int from, int length) {
+		for (int i = from; i < length; ++i) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r') {
+				return -1;
+			}
+			if (c == endToken.charAt(0) && regionMatches(text, i, length, endToken)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean regionMatches(CharSequence text, int position, int length, String token) {
+		if (position + token.length() > length) {
+			return false;
+		}
+		for (int i = 0; i < token.length(); ++i) {
+			if (text.charAt(position + i) != token.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int lastLineBreak(CharSequence text) {
+		for (int i = text.length() - 1; i >= 0; --i) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
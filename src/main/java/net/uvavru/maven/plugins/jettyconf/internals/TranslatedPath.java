@@ -0,0 +1,36 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+
+/**
+ * Result of a translation of a single artifact path.
+ * 
+ * @author stepan
+ *
+ */
+public class TranslatedPath {
+
+	private final int index;
+	private final File file;
+
+	public TranslatedPath(int index, File file) {
+		this.index = index;
+		this.file = file;
+	}
+
+	/**
+	 * @return index of the matched translation pattern or {@code -1} if the
+	 *         path wasn't translated
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return translated file or the canonical file of the artifact if the
+	 *         path wasn't translated
+	 */
+	public File getFile() {
+		return file;
+	}
+}
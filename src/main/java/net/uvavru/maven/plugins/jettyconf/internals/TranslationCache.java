@@ -0,0 +1,95 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import java.io.File;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Cache of translated paths shared by all the executions in a reactor
+ * build.<br>
+ * 
+ * Modules of a multi-module build typically have heavily overlapping
+ * dependencies and the same plugin configuration. Results are keyed by the
+ * artifact and the configuration they were computed for and so executions
+ * with different configuration don't interfere. The cache is safe to use
+ * from modules built in parallel.
+ * 
+ * @author stepan
+ *
+ */
+public class TranslationCache {
+
+	private static final Map<Object, TranslationCache> CACHES = new WeakHashMap<Object, TranslationCache>();
+
+	private final ConcurrentMap<String, TranslatedPath> translatedPaths = new ConcurrentHashMap<String, TranslatedPath>();
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Returns the cache of the session, the cache is released together with
+	 * the session.<br>
+	 * Parallel builds give every module its own copy of the session, the
+	 * cache is therefore bound to the build request all the copies share.
+	 * 
+	 * @param session
+	 * @return
+	 */
+	public static TranslationCache forSession(MavenSession session) {
+		Object key = session.getRequest() != null ? session.getRequest() : session;
+		synchronized (CACHES) {
+			TranslationCache cache = CACHES.get(key);
+			if (cache == null) {
+				cache = new TranslationCache();
+				CACHES.put(key, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * @param patterns
+	 *            the translation patterns
+	 * @param replacements
+	 *            the translation replacements
+	 * @param file
+	 *            the artifact file
+	 * @return cached translation or {@code null}
+	 */
+	public TranslatedPath getTranslatedPath(String patterns, String replacements, File file) {
+		TranslatedPath translatedPath = translatedPaths.get(translationKey(patterns, replacements, file));
+		if (translatedPath == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return translatedPath;
+	}
+
+	public void putTranslatedPath(String patterns, String replacements, File file, TranslatedPath translatedPath) {
+		translatedPaths.put(translationKey(patterns, replacements, file), translatedPath);
+	}
+
+	private static String translationKey(String patterns, String replacements, File file) {
+		return patterns + '\u0000' + replacements + '\u0000' + file.getAbsolutePath();
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "reactor translation cache: " + getHits() + " results reused, "
+				+ getMisses() + " computed";
+	}
+}
@@ -0,0 +1,139 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Servlet container relevant content of a single classpath entry.
+ *
+ * @author stepan
+ *
+ */
+public class AnnotationIndexEntry {
+
+	private final File file;
+	private boolean webFragment;
+	private boolean webResources;
+	private boolean tagLibraries;
+	private final List<String> initializers = new ArrayList<String>();
+	private final List<String[]> annotatedClasses = new ArrayList<String[]>();
+
+	public AnnotationIndexEntry(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return whether the entry contains {@code META-INF/web-fragment.xml}
+	 */
+	public boolean hasWebFragment() {
+		return webFragment;
+	}
+
+	public void setWebFragment(boolean webFragment) {
+		this.webFragment = webFragment;
+	}
+
+	/**
+	 * @return whether the entry contains {@code META-INF/resources/}
+	 */
+	public boolean hasWebResources() {
+		return webResources;
+	}
+
+	public void setWebResources(boolean webResources) {
+		this.webResources = webResources;
+	}
+
+	/**
+	 * @return whether the entry contains {@code *.tld} files in
+	 *         {@code META-INF}
+	 */
+	public boolean hasTagLibraries() {
+		return tagLibraries;
+	}
+
+	public void setTagLibraries(boolean tagLibraries) {
+		this.tagLibraries = tagLibraries;
+	}
+
+	/**
+	 * @return {@code ServletContainerInitializer} services
+	 */
+	public List<String> getInitializers() {
+		return initializers;
+	}
+
+	/**
+	 * @return pairs of a class name and a name of its servlet annotation
+	 */
+	public List<String[]> getAnnotatedClasses() {
+		return annotatedClasses;
+	}
+
+	public void addAnnotatedClass(String className, String annotation) {
+		annotatedClasses.add(new String[] { className, annotation });
+	}
+
+	/**
+	 * @return whether the container needs to scan the entry at all
+	 */
+	public boolean isRelevant() {
+		return webFragment || webResources || tagLibraries || !initializers.isEmpty()
+				|| !annotatedClasses.isEmpty();
+	}
+
+	/**
+	 * @return single line form for {@link FileStampCache}
+	 */
+	public String toCacheValue() {
+		StringBuilder value = new StringBuilder(webFragment ? "1" : "0");
+		value.append('\t');
+		for (int i = 0; i < initializers.size(); ++i) {
+			value.append(i > 0 ? "," : "").append(initializers.get(i));
+		}
+		value.append('\t');
+		for (int i = 0; i < annotatedClasses.size(); ++i) {
+			value.append(i > 0 ? "," : "").append(annotatedClasses.get(i)[0]).append('=')
+					.append(annotatedClasses.get(i)[1]);
+		}
+		value.append('\t').append(webResources ? "1" : "0");
+		value.append('\t').append(tagLibraries ? "1" : "0");
+		return value.toString();
+	}
+
+	/**
+	 * @param file
+	 * @param value
+	 *            as returned by {@link #toCacheValue()}
+	 * @return the entry or {@code null} if the value was cached by an older
+	 *         version which didn't record all the content
+	 */
+	public static AnnotationIndexEntry fromCacheValue(File file, String value) {
+		String[] fields = value.split("\t", -1);
+		if (fields.length < 5) {
+			return null;
+		}
+		AnnotationIndexEntry entry = new AnnotationIndexEntry(file);
+		entry.setWebFragment("1".equals(fields[0]));
+		if (fields[1].length() > 0) {
+			for (String initializer : fields[1].split(",")) {
+				entry.getInitializers().add(initializer);
+			}
+		}
+		if (fields[2].length() > 0) {
+			for (String annotatedClass : fields[2].split(",")) {
+				int separator = annotatedClass.indexOf('=');
+				entry.addAnnotatedClass(annotatedClass.substring(0, separator),
+						annotatedClass.substring(separator + 1));
+			}
+		}
+		entry.setWebResources("1".equals(fields[3]));
+		entry.setTagLibraries("1".equals(fields[4]));
+		return entry;
+	}
+}
@@ -2,6 +2,8 @@ package net.uvavru.maven.plugins.jettyconf.types;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.maven.artifact.Artifact;
 
@@ -12,7 +14,56 @@ public class ArtifactCandidates extends ArrayList<Artifact> implements List<Arti
 	 */
 	private static final long serialVersionUID = -5574381452014259847L;
 
-	
-	
+	private transient PathResolutionCache pathResolutionCache;
+
+	private transient FileSystemProbe fileSystemProbe;
+
+	private transient ConcurrentMap<Artifact, String> descriptors;
+
+	public ArtifactCandidates() {
+		this(new NioFileSystemProbe());
+	}
+
+	/**
+	 * @param fileSystemProbe
+	 *            filesystem the artifact files are resolved against
+	 */
+	public ArtifactCandidates(FileSystemProbe fileSystemProbe) {
+		this.fileSystemProbe = fileSystemProbe;
+	}
+
+	/**
+	 * @return cache of paths shared by all the passes over these candidates
+	 */
+	public PathResolutionCache getPathResolutionCache() {
+		if (pathResolutionCache == null) {
+			pathResolutionCache = fileSystemProbe == null ? new PathResolutionCache()
+					: new PathResolutionCache(fileSystemProbe);
+		}
+		return pathResolutionCache;
+	}
+
+	/**
+	 * @param artifact
+	 * @return {@code groupId:artifactId:type:classifier} of the artifact,
+	 *         computed once for all the passes over these candidates
+	 */
+	public String getDescriptor(Artifact artifact) {
+		ConcurrentMap<Artifact, String> map;
+		synchronized (this) {
+			if (descriptors == null) {
+				descriptors = new ConcurrentHashMap<Artifact, String>();
+			}
+			map = descriptors;
+		}
+		String descriptor = map.get(artifact);
+		if (descriptor == null) {
+			descriptor = new StringBuilder().append(artifact.getGroupId()).append(':')
+					.append(artifact.getArtifactId()).append(':').append(artifact.getType()).append(':')
+					.append(artifact.getClassifier()).toString();
+			map.putIfAbsent(artifact, descriptor);
+		}
+		return descriptor;
+	}
 
 }
@@ -0,0 +1,47 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.File;
+
+/**
+ * Jetty context xml template and the location of the file generated from it.
+ * 
+ * @author stepan
+ *
+ */
+public class ContextTemplate {
+
+	private final File templateFile;
+	private final File targetFile;
+
+	public ContextTemplate(File templateFile, File targetFile) {
+		this.templateFile = templateFile;
+		this.targetFile = targetFile;
+	}
+
+	public File getTemplateFile() {
+		return templateFile;
+	}
+
+	public File getTargetFile() {
+		return targetFile;
+	}
+
+	/**
+	 * @return file with the fingerprint of the inputs of the last generation
+	 */
+	public File getFingerprintFile() {
+		return new File(targetFile.getParentFile(), "." + targetFile.getName() + ".fingerprint");
+	}
+
+	/**
+	 * @return file with the compiled template of the last generation
+	 */
+	public File getCompiledTemplateFile() {
+		return new File(targetFile.getParentFile(), "." + targetFile.getName() + ".compiled");
+	}
+
+	@Override
+	public String toString() {
+		return templateFile.toString();
+	}
+}
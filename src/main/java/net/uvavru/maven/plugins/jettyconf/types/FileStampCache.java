@@ -0,0 +1,144 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Persistent cache of values computed from files.<br>
+ *
+ * A value is valid as long as the file has the same path, last modification
+ * time and size as when the value was computed. Values are single line
+ * strings, their format is up to the user of the cache. The cache is thread
+ * safe.
+ *
+ * @author stepan
+ *
+ */
+public class FileStampCache {
+
+	private static final String VERSION = "#jetty-conf file stamp cache 1";
+
+	private final ConcurrentMap<String, String[]> entries = new ConcurrentHashMap<String, String[]>();
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	private boolean modified;
+
+	/**
+	 * Loads the cache stored by {@link #store(File)}, a missing or corrupted
+	 * cache file results in an empty cache.
+	 *
+	 * @param cacheFile
+	 * @return
+	 */
+	public static FileStampCache load(File cacheFile) {
+		FileStampCache cache = new FileStampCache();
+		if (!cacheFile.isFile()) {
+			return cache;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+			if (!VERSION.equals(reader.readLine())) {
+				return cache;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				// path, last modified, size, value
+				String[] fields = line.split("\t", 4);
+				if (fields.length == 4) {
+					cache.entries.put(fields[0], new String[] { fields[1], fields[2], fields[3] });
+				}
+			}
+		} catch (IOException e) {
+			cache.entries.clear();
+		} finally {
+			IOUtil.close(reader);
+		}
+		return cache;
+	}
+
+	/**
+	 * @param file
+	 * @return the value computed from the same version of the file or
+	 *         {@code null}
+	 */
+	public String get(File file) {
+		String[] entry = entries.get(file.getAbsolutePath());
+		if (entry != null && entry[0].equals(String.valueOf(file.lastModified()))
+				&& entry[1].equals(String.valueOf(file.length()))) {
+			hits.incrementAndGet();
+			return entry[2];
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * @param file
+	 * @param value
+	 *            single line value
+	 */
+	public void put(File file, String value) {
+		if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+			throw new IllegalArgumentException("Only single line values can be cached");
+		}
+		entries.put(file.getAbsolutePath(), new String[] { String.valueOf(file.lastModified()),
+				String.valueOf(file.length()), value });
+		synchronized (this) {
+			modified = true;
+		}
+	}
+
+	/**
+	 * Stores the cache if it was modified. Entries are sorted by the path so
+	 * that the file is stable.
+	 *
+	 * @param cacheFile
+	 * @throws IOException
+	 */
+	public void store(File cacheFile) throws IOException {
+		synchronized (this) {
+			if (!modified && cacheFile.isFile()) {
+				return;
+			}
+			modified = false;
+		}
+		StringBuilder content = new StringBuilder(VERSION).append('\n');
+		for (Map.Entry<String, String[]> entry : new TreeMap<String, String[]>(entries).entrySet()) {
+			String[] stamp = entry.getValue();
+			content.append(entry.getKey()).append('\t').append(stamp[0]).append('\t')
+					.append(stamp[1]).append('\t').append(stamp[2]).append('\n');
+		}
+		File parentDir = cacheFile.getParentFile();
+		if (parentDir != null) {
+			parentDir.mkdirs();
+		}
+		FileUtils.fileWrite(cacheFile.getPath(), "UTF-8", content.toString());
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "file stamp cache: " + getHits() + " hits, " + getMisses() + " misses";
+	}
+}
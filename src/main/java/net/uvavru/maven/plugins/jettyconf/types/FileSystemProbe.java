@@ -0,0 +1,32 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The filesystem as seen by the artifact filtering and path translation.<br>
+ * 
+ * Implementations must be thread safe, files are probed concurrently in the
+ * parallel mode.
+ * 
+ * @author stepan
+ *
+ * @see PathResolutionCache
+ */
+public interface FileSystemProbe {
+
+	/**
+	 * Canonicalizes the file and reads its attributes.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the canonical path cannot be determined
+	 */
+	ResolvedPath probe(File file) throws IOException;
+
+	/**
+	 * @return number of filesystem calls made by the probe so far
+	 */
+	int getFileSystemCalls();
+}
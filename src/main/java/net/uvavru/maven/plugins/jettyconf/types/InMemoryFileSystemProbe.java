@@ -0,0 +1,103 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Filesystem held in memory for measuring and testing the artifact filtering
+ * and path translation at scale without touching the disk.<br>
+ * 
+ * Paths are canonicalized by normalizing their absolute form, there are no
+ * links. Parent directories of added files exist implicitly. Every call may
+ * be delayed to simulate a slow (e.g. network) filesystem; the delay blocks
+ * the calling thread the way real filesystem calls do.
+ * 
+ * @author stepan
+ *
+ */
+public class InMemoryFileSystemProbe implements FileSystemProbe {
+
+	private final ConcurrentMap<String, Boolean> entries = new ConcurrentHashMap<String, Boolean>();
+
+	private final AtomicInteger fileSystemCalls = new AtomicInteger();
+
+	private volatile long latencyNanos;
+
+	/**
+	 * Adds a regular file and its parent directories.
+	 * 
+	 * @param path
+	 * @return the canonical file
+	 */
+	public File addFile(String path) {
+		File file = canonicalize(new File(path));
+		entries.put(file.getPath(), Boolean.FALSE);
+		addParents(file);
+		return file;
+	}
+
+	/**
+	 * Adds a directory and its parent directories.
+	 * 
+	 * @param path
+	 * @return the canonical file
+	 */
+	public File addDirectory(String path) {
+		File directory = canonicalize(new File(path));
+		entries.put(directory.getPath(), Boolean.TRUE);
+		addParents(directory);
+		return directory;
+	}
+
+	private void addParents(File file) {
+		for (File parent = file.getParentFile(); parent != null; parent = parent.getParentFile()) {
+			if (Boolean.TRUE.equals(entries.put(parent.getPath(), Boolean.TRUE))) {
+				// the rest was added before
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @param latency
+	 * @param unit
+	 *            latency of each simulated filesystem call
+	 */
+	public void setLatency(long latency, TimeUnit unit) {
+		this.latencyNanos = unit.toNanos(latency);
+	}
+
+	public ResolvedPath probe(File file) throws IOException {
+		// canonicalization and attributes, the same as on the disk
+		call();
+		File canonicalFile = canonicalize(file);
+		call();
+		Boolean directory = entries.get(canonicalFile.getPath());
+		return new ResolvedPath(canonicalFile, directory != null, Boolean.TRUE.equals(directory));
+	}
+
+	private void call() {
+		fileSystemCalls.incrementAndGet();
+		long latency = latencyNanos;
+		if (latency > 0) {
+			long deadline = System.nanoTime() + latency;
+			long remaining;
+			while ((remaining = deadline - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(remaining);
+			}
+		}
+	}
+
+	private static File canonicalize(File file) {
+		return file.getAbsoluteFile().toPath().normalize().toFile();
+	}
+
+	public int getFileSystemCalls() {
+		return fileSystemCalls.get();
+	}
+}
@@ -0,0 +1,40 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Probe of the real filesystem.<br>
+ * 
+ * Besides the canonicalization, all the attributes of a file are read by a
+ * single {@link Files#readAttributes} call. As with {@link File#exists()}, a
+ * file whose attributes cannot be read doesn't exist.
+ * 
+ * @author stepan
+ *
+ */
+public class NioFileSystemProbe implements FileSystemProbe {
+
+	private final AtomicInteger fileSystemCalls = new AtomicInteger();
+
+	public ResolvedPath probe(File file) throws IOException {
+		File canonicalFile = file.getCanonicalFile();
+		fileSystemCalls.addAndGet(2);
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(canonicalFile.toPath(), BasicFileAttributes.class);
+			return new ResolvedPath(canonicalFile, true, attributes.isDirectory());
+		} catch (IOException e) {
+			return new ResolvedPath(canonicalFile, false, false);
+		} catch (InvalidPathException e) {
+			return new ResolvedPath(canonicalFile, false, false);
+		}
+	}
+
+	public int getFileSystemCalls() {
+		return fileSystemCalls.get();
+	}
+}
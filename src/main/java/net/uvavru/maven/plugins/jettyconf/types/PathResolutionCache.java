@@ -0,0 +1,81 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per execution cache of canonical paths and file attributes.<br>
+ * 
+ * Each file is canonicalized and examined at most once no matter how many
+ * times it's asked for.
+ * 
+ * @author stepan
+ *
+ */
+public class PathResolutionCache {
+
+	private final ConcurrentMap<File, ResolvedPath> paths = new ConcurrentHashMap<File, ResolvedPath>();
+
+	private final FileSystemProbe probe;
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	public PathResolutionCache() {
+		this(new NioFileSystemProbe());
+	}
+
+	/**
+	 * @param probe
+	 *            filesystem to resolve the files against
+	 */
+	public PathResolutionCache(FileSystemProbe probe) {
+		this.probe = probe;
+	}
+
+	/**
+	 * Resolves the file.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the canonical path cannot be determined
+	 */
+	public ResolvedPath resolve(File file) throws IOException {
+		ResolvedPath resolvedPath = paths.get(file);
+		if (resolvedPath != null) {
+			hits.incrementAndGet();
+			return resolvedPath;
+		}
+		misses.incrementAndGet();
+
+		resolvedPath = probe.probe(file);
+
+		ResolvedPath previous = paths.putIfAbsent(file, resolvedPath);
+		return previous == null ? resolvedPath : previous;
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of filesystem calls made by the probe so far
+	 */
+	public int getFileSystemCalls() {
+		return probe.getFileSystemCalls();
+	}
+
+	@Override
+	public String toString() {
+		return "path resolution cache: " + getHits() + " hits, " + getMisses()
+				+ " misses";
+	}
+}
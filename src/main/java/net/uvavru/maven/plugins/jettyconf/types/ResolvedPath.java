@@ -0,0 +1,38 @@
+package net.uvavru.maven.plugins.jettyconf.types;
+
+import java.io.File;
+
+/**
+ * Canonical form and attributes of a file resolved at once.
+ * 
+ * @author stepan
+ *
+ */
+public class ResolvedPath {
+
+	private final File canonicalFile;
+	private final boolean exists;
+	private final boolean directory;
+
+	public ResolvedPath(File canonicalFile, boolean exists, boolean directory) {
+		this.canonicalFile = canonicalFile;
+		this.exists = exists;
+		this.directory = directory;
+	}
+
+	public File getCanonicalFile() {
+		return canonicalFile;
+	}
+
+	public String getCanonicalPath() {
+		return canonicalFile.getPath();
+	}
+
+	public boolean exists() {
+		return exists;
+	}
+
+	public boolean isDirectory() {
+		return directory;
+	}
+}
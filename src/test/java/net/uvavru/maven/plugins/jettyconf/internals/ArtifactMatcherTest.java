@@ -0,0 +1,128 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import net.uvavru.maven.plugins.jettyconf.types.ArtifactCandidates;
+
+import org.apache.maven.artifact.Artifact;
+import org.junit.Test;
+
+public class ArtifactMatcherTest {
+
+	/**
+	 * Expressions turned into rules.
+	 */
+	private static final String[] SIMPLE_PATTERNS = { ".*", "[^:]*:[^:]*:[^:]*:[^:]*",
+			"org\\.eclipse\\.jetty:[^:]*:jar:[^:]*", "[^:]*:jetty-util:[^:]*:[^:]*", "[^:]*:[^:]*:war:[^:]*",
+			"[^:]*:[^:]*:jar:null", "[^:]*:[^:]*:jar:", "[^:]*:[^:]*:jar:tests", "::[^:]*:[^:]*",
+			"com\\.example:app:war:null", "com\\.example:app_2:jar:[^:]*", "null:[^:]*:[^:]*:[^:]*",
+			"[^:]*:[^:]*:[^:]*:null" };
+
+	/**
+	 * Expressions left to the regular expression engine.
+	 */
+	private static final String[] COMPLEX_PATTERNS = { "org.eclipse.jetty:[^:]*:jar:[^:]*",
+			"org\\.eclipse\\..*", "[^:]*:jetty-[^:]*:jar:[^:]*", "[^:]*:[^:]*:(jar|war):[^:]*",
+			"[^:]*:[^:]*:jar", "[^:]*:[^:]*:jar:[^:]*:[^:]*", "[^:]*[^:]*:[^:]*:jar:[^:]*",
+			"[^:]*:[^:]*:jar:\\[^:]*", "[^:]*:[^:]*:jar:[^:]+", "" };
+
+	/**
+	 * groupId, artifactId, type and classifier.
+	 */
+	private static final String[][] ARTIFACTS = { { "org.eclipse.jetty", "jetty-util", "jar", null },
+			{ "org.eclipse.jetty", "jetty-util", "jar", "" }, { "org.eclipse.jetty", "jetty-util", "jar", "tests" },
+			{ "orgXeclipseXjetty", "jetty-util", "jar", null }, { "com.example", "app", "war", null },
+			{ "com.example", "app", "war", "null" }, { "com.example", "app_2", "jar", "sources" },
+			{ "", "", "jar", null }, { "", "", "", "" }, { null, "app", "jar", null },
+			{ "null", "app", "jar", "null" } };
+
+	@Test
+	public void rulesFromRegexMatchLikeTheRegex() {
+		for (String regex : SIMPLE_PATTERNS) {
+			ArtifactMatcher matcher = ArtifactMatcher.compile(regex, null, null);
+			assertFalse(regex, matcher.isDescriptorNeeded());
+			assertMatchesLikeRegex(regex, matcher);
+		}
+	}
+
+	@Test
+	public void complexRegexIsMatchedAgainstTheDescriptor() {
+		for (String regex : COMPLEX_PATTERNS) {
+			ArtifactMatcher matcher = ArtifactMatcher.compile(regex, null, null);
+			assertTrue(regex, matcher.isDescriptorNeeded());
+			assertMatchesLikeRegex(regex, matcher);
+		}
+	}
+
+	@Test
+	public void includesAndExcludes() {
+		ArtifactMatcher matcher = ArtifactMatcher.compile(".*", "org.eclipse.*, *:*-util, ::war:, :::t?sts", "*:*:*:tests");
+
+		assertEquals("[true, true, false, true, true, true, false, false, false, false, false]", matches(matcher));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void tooManyFields() {
+		ArtifactMatcher.compile(".*", "a:b:c:d:e", null);
+	}
+
+	private static void assertMatchesLikeRegex(String regex, ArtifactMatcher matcher) {
+		ArtifactCandidates candidates = new ArtifactCandidates();
+		for (String[] fields : ARTIFACTS) {
+			Artifact artifact = artifact(fields);
+			String descriptor = candidates.getDescriptor(artifact);
+			assertEquals(regex + " ~ " + descriptor, Pattern.matches(regex, descriptor),
+					matcher.matches(artifact, descriptor));
+		}
+	}
+
+	private static String matches(ArtifactMatcher matcher) {
+		ArtifactCandidates candidates = new ArtifactCandidates();
+		StringBuilder matches = new StringBuilder();
+		for (String[] fields : ARTIFACTS) {
+			Artifact artifact = artifact(fields);
+			matches.append(matches.length() == 0 ? "[" : ", ").append(
+					matcher.matches(artifact, candidates.getDescriptor(artifact)));
+		}
+		return matches.append(']').toString();
+	}
+
+	/**
+	 * @param fields
+	 * @return artifact with the fields, unlike {@code DefaultArtifact} it
+	 *         allows the empty and {@code null} ones
+	 */
+	private static Artifact artifact(final String[] fields) {
+		return (Artifact) Proxy.newProxyInstance(ArtifactMatcherTest.class.getClassLoader(),
+				new Class<?>[] { Artifact.class }, new InvocationHandler() {
+
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("getGroupId".equals(name)) {
+							return fields[0];
+						} else if ("getArtifactId".equals(name)) {
+							return fields[1];
+						} else if ("getType".equals(name)) {
+							return fields[2];
+						} else if ("getClassifier".equals(name)) {
+							return fields[3];
+						} else if ("equals".equals(name)) {
+							return proxy == args[0];
+						} else if ("hashCode".equals(name)) {
+							return System.identityHashCode(proxy);
+						} else if ("toString".equals(name)) {
+							return Arrays.toString(fields);
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+}
@@ -0,0 +1,120 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import static net.uvavru.maven.plugins.jettyconf.internals.StreamingJettyConfWriterTest.TEMPLATE;
+import static net.uvavru.maven.plugins.jettyconf.internals.StreamingJettyConfWriterTest.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompiledJettyConfWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void compiledAndStreamEnginesWriteTheSameBytes() throws Exception {
+		List<File> classpathFiles = files("repo/a/a-1.jar", "repo/b/b-1.jar", "app/target/classes", "x&y.jar");
+		List<File> webAppFiles = files("app/src/main/webapp", "repo/c/c-1");
+
+		for (String encoding : Arrays.asList("UTF-8", "UTF-16")) {
+			File template = template(encoding, String.format(TEMPLATE, encoding));
+			for (PathBases bases : Arrays.asList(null,
+					PathBases.compute(files("repo"), Arrays.asList(classpathFiles, webAppFiles)))) {
+				ContextXmlWriter stream = new StreamingJettyConfWriter(classpathFiles, webAppFiles);
+				stream.setPathBases(bases);
+				byte[] expected = write(stream, template);
+
+				File compiledTemplateFile = new File(folder.getRoot(), "compiled-" + encoding + "-" + (bases != null));
+				ExecutionReport report = new ExecutionReport();
+				// compiled on the first write and loaded on the second one
+				for (int i = 0; i < 2; ++i) {
+					ContextXmlWriter compiled = new CompiledJettyConfWriter(classpathFiles, webAppFiles, report,
+							compiledTemplateFile, "1.0");
+					compiled.setPathBases(bases);
+					assertArrayEquals(encoding + ", bases " + bases, expected, write(compiled, template));
+				}
+				assertEquals(1, report.getCounter(ExecutionReport.COMPILED_TEMPLATE_HITS));
+			}
+		}
+	}
+
+	@Test
+	public void staleCompiledTemplateIsRecompiled() throws Exception {
+		File template = template("UTF-8", String.format(TEMPLATE, "UTF-8"));
+		File compiledTemplateFile = new File(folder.getRoot(), "compiled");
+		ExecutionReport report = new ExecutionReport();
+
+		write(compiled(report, compiledTemplateFile, "1.0"), template);
+		String key = keyOf(compiledTemplateFile);
+		assertNotNull(CompiledTemplate.load(compiledTemplateFile, key));
+
+		FileUtils.fileWrite(template.getPath(), "UTF-8",
+				String.format(TEMPLATE, "UTF-8").replace("/ž", "/changed"));
+		String output = new String(write(compiled(report, compiledTemplateFile, "1.0"), template), "UTF-8");
+		assertTrue(output.contains("<Set name=\"contextPath\">/changed</Set>"));
+		assertEquals(0, report.getCounter(ExecutionReport.COMPILED_TEMPLATE_HITS));
+		assertNull(CompiledTemplate.load(compiledTemplateFile, key));
+
+		write(compiled(report, compiledTemplateFile, "1.1"), template);
+		assertEquals(0, report.getCounter(ExecutionReport.COMPILED_TEMPLATE_HITS));
+
+		write(compiled(report, compiledTemplateFile, "1.1"), template);
+		assertEquals(1, report.getCounter(ExecutionReport.COMPILED_TEMPLATE_HITS));
+	}
+
+	@Test
+	public void corruptedCompiledTemplateIsRecompiled() throws Exception {
+		File template = template("UTF-8", String.format(TEMPLATE, "UTF-8"));
+		File compiledTemplateFile = new File(folder.getRoot(), "compiled");
+		FileUtils.fileWrite(compiledTemplateFile.getPath(), "UTF-8", "garbage");
+		ExecutionReport report = new ExecutionReport();
+
+		byte[] output = write(compiled(report, compiledTemplateFile, "1.0"), template);
+
+		assertArrayEquals(write(new StreamingJettyConfWriter(files("a.jar"), files("web")), template), output);
+		assertEquals(0, report.getCounter(ExecutionReport.COMPILED_TEMPLATE_HITS));
+		assertNotNull(CompiledTemplate.load(compiledTemplateFile, keyOf(compiledTemplateFile)));
+	}
+
+	private ContextXmlWriter compiled(ExecutionReport report, File compiledTemplateFile, String pluginVersion) {
+		return new CompiledJettyConfWriter(files("a.jar"), files("web"), report, compiledTemplateFile,
+				pluginVersion);
+	}
+
+	/**
+	 * @param compiledTemplateFile
+	 * @return the key stored in the file, see {@link CompiledTemplate#store(File)}
+	 */
+	private static String keyOf(File compiledTemplateFile) throws IOException {
+		DataInputStream input = new DataInputStream(new FileInputStream(compiledTemplateFile));
+		try {
+			input.readUTF();
+			input.readInt();
+			return input.readUTF();
+		} finally {
+			input.close();
+		}
+	}
+
+	private List<File> files(String... paths) {
+		return StreamingJettyConfWriterTest.files(folder, paths);
+	}
+
+	private File template(String encoding, String content) throws IOException {
+		return StreamingJettyConfWriterTest.template(folder, encoding, content);
+	}
+}
@@ -0,0 +1,75 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class PathTranslationTableTest {
+
+	private static final String[] PATTERNS = { "/repo/org/([^/]*)/1\\.0/(.*)", "/repo/(?<=o/)x(.*)",
+			"/repo/\\bab(.*)", "/repo/ab\\b(.*)", "/repo/(?<!o/)y(.*)", "/repo/^(.*)", "/repo/\\A(.*)",
+			"/repo/a(.*)", "/rep(.*)\\.jar", "/repo/(.*)", "^/other/(.*)", "(.*)\\.jar", "/repo/\\G(.*)" };
+
+	private static final String[] REPLACEMENTS = { "/org/$1/$2", "/x/$1", "/ab/$1", "/abb/$1", "/y/$1", "/caret/$1",
+			"/a/$1", "/a2/$1", "/rep/$1", "/r/$1", "/o/$1", "/jar/$1", "/g/$1" };
+
+	private static final String[] PATHS = { "/repo/org/foo/1.0/foo.jar", "/repo/org/foo/2.0/foo.jar", "/repo/xfoo",
+			"/repo/ab", "/repo/abc.jar", "/repo/ab-c", "/repo/y", "/repo/", "/repo/a", "/rep.jar", "/other/a.jar",
+			"/other", "/repository/b.jar", "", "b.jar" };
+
+	@Test
+	public void firstMatchWinsLikeTheRegularExpressions() {
+		PathTranslationTable table = PathTranslationTable.compile(join(PATTERNS), join(REPLACEMENTS));
+
+		for (String path : PATHS) {
+			int expected = -1;
+			for (int i = 0; i < PATTERNS.length; ++i) {
+				if (Pattern.matches(PATTERNS[i], path)) {
+					expected = i;
+					break;
+				}
+			}
+			int index = table.indexOf(path);
+			assertEquals(path, expected, index);
+			if (index >= 0) {
+				assertEquals(path, new File(path.replaceAll(PATTERNS[index], REPLACEMENTS[index])),
+						table.translate(index, path));
+			}
+		}
+	}
+
+	@Test
+	public void remainderOfPatternsWithLiteralPrefix() {
+		PathTranslationTable table = PathTranslationTable.compile(join(PATTERNS), join(REPLACEMENTS));
+
+		for (int i = 0; i < PATTERNS.length; ++i) {
+			boolean prefixed = PathTranslationTable.literalPrefixEnd(PATTERNS[i]) > 0;
+			assertEquals(PATTERNS[i], prefixed && !PATTERNS[i].contains("\\G"), table.isRemainderMatched(i));
+		}
+		assertTrue(table.isRemainderMatched(0));
+		assertFalse(table.isRemainderMatched(PATTERNS.length - 2));
+	}
+
+	@Test
+	public void literalPrefixEnd() {
+		assertEquals("/repo/org/".length(), PathTranslationTable.literalPrefixEnd("/repo/org/([^/]*)/1\\.0/(.*)"));
+		assertEquals("/repo/org/foo/1\\.0/".length(), PathTranslationTable.literalPrefixEnd("/repo/org/foo/1\\.0/(.*)"));
+		assertEquals("/repo/".length(), PathTranslationTable.literalPrefixEnd("/repo/a?b"));
+		assertEquals("/repo/".length(), PathTranslationTable.literalPrefixEnd("/repo/\\d+"));
+		assertEquals(0, PathTranslationTable.literalPrefixEnd("/repo/a|/other/b"));
+		assertEquals(0, PathTranslationTable.literalPrefixEnd("^/repo/"));
+	}
+
+	private static String join(String[] values) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			joined.append(joined.length() == 0 ? "" : ",").append(value);
+		}
+		return joined.toString();
+	}
+}
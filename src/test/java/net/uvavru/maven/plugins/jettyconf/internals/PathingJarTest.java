@@ -0,0 +1,63 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarInputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PathingJarTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void directoriesEndWithSlashWhetherTheyExistOrNot() throws IOException {
+		File existing = folder.newFolder("classes");
+		File missing = new File(folder.getRoot(), "translated/classes");
+		File jar = new File(folder.getRoot(), "lib/a.jar");
+		File zip = new File(folder.getRoot(), "lib/b.ZIP");
+
+		String[] classPath = classPath(PathingJar.create(Arrays.asList(existing, missing, jar, zip)));
+
+		assertArrayEquals(new String[] { existing.toURI().toString(), missing.toURI() + "/",
+				jar.toURI().toString(), zip.toURI().toString() }, classPath);
+	}
+
+	@Test
+	public void directoryCreatedAfterTheJarIsLoaded() throws IOException {
+		File classes = new File(folder.getRoot(), "target/classes");
+		File pathingJar = new File(folder.getRoot(), "pathing.jar");
+		PathingJar.writeIfChanged(pathingJar, Arrays.asList(classes));
+
+		classes.mkdirs();
+		FileUtils.fileWrite(new File(classes, "app.properties").getPath(), "UTF-8", "a=b");
+
+		URLClassLoader loader = new URLClassLoader(new URL[] { pathingJar.toURI().toURL() }, null);
+		try {
+			assertNotNull(loader.getResource("app.properties"));
+		} finally {
+			loader.close();
+		}
+	}
+
+	private static String[] classPath(byte[] jar) throws IOException {
+		JarInputStream inputStream = new JarInputStream(new ByteArrayInputStream(jar));
+		try {
+			return inputStream.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH).split(" ");
+		} finally {
+			inputStream.close();
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+public class StreamingJettyConfWriterTest {
+
+	static final String TEMPLATE = "<?xml version=\"1.0\" encoding=\"%s\"?>\n"
+			+ "<!DOCTYPE Configure [\n  <!ELEMENT Configure ANY>\n]>\n"
+			+ "<!-- <Set name='extraClasspath'/> -->\n"
+			+ "<Configure class=\"org.eclipse.jetty.webapp.WebAppContext\">\n"
+			+ "  <?jetty-conf ignored?>\n"
+			+ "  <Set name=\"contextPath\">/ž</Set>\n"
+			+ "  <Set name=\"extraClasspath\"/>\n"
+			+ "  <Set name=\"baseResource\">\n"
+			+ "    <New class=\"org.eclipse.jetty.util.resource.ResourceCollection\">\n"
+			+ "      <Arg><Array type=\"java.lang.String\">\n"
+			+ "        <Item><![CDATA[src/main/webapp]]></Item>\n"
+			+ "      </Array></Arg>\n"
+			+ "    </New>\n"
+			+ "  </Set>\n"
+			+ "</Configure>\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void domAndStreamEnginesInjectTheSameContent() throws Exception {
+		List<File> classpathFiles = files("repo/a/a-1.jar", "repo/b/b-1.jar", "app/target/classes", "x&y.jar");
+		List<File> webAppFiles = files("app/src/main/webapp", "repo/c/c-1");
+		File template = template("UTF-8");
+
+		for (PathBases bases : Arrays.asList(null, PathBases.compute(Collections.<File> emptyList(),
+				Arrays.asList(classpathFiles)), PathBases.compute(files("repo"), Arrays.asList(classpathFiles,
+				webAppFiles)))) {
+			ContextXmlWriter dom = new JettyConfWriter(classpathFiles, webAppFiles);
+			dom.setPathBases(bases);
+			ContextXmlWriter stream = new StreamingJettyConfWriter(classpathFiles, webAppFiles);
+			stream.setPathBases(bases);
+
+			assertEquals(canonical(write(dom, template)), canonical(write(stream, template)));
+		}
+	}
+
+	@Test
+	public void templateIsCopiedVerbatim() throws Exception {
+		File template = template("UTF-8");
+		String output = new String(write(new StreamingJettyConfWriter(files("a.jar"), files("web")), template),
+				"UTF-8");
+
+		String expected = String.format(TEMPLATE, "UTF-8")
+				.replace("<Set name=\"extraClasspath\"/>", "<Set name=\"extraClasspath\">"
+						+ ContextEntries.classpathXml(files("a.jar"), null) + "</Set>")
+				.replace("      </Array>", "      " + ContextEntries.webAppItemsXml(files("web"), null) + "</Array>");
+		assertEquals(expected, output);
+	}
+
+	/**
+	 * The dom engine cannot serialize a document declared as UTF-16, the
+	 * stream output is compared with the same template stored as UTF-8.
+	 */
+	@Test
+	public void utf16WithByteOrderMark() throws Exception {
+		File template = template("UTF-16");
+		byte[] output = write(new StreamingJettyConfWriter(files("ž.jar"), files("web")), template);
+
+		assertArrayEquals(new byte[] { (byte) 0xfe, (byte) 0xff }, Arrays.copyOf(output, 2));
+		String content = new String(output, "UTF-16");
+		assertTrue(content.contains(new File(folder.getRoot(), "ž.jar").toURI().toString()));
+		assertEquals(canonical(write(new JettyConfWriter(files("ž.jar"), files("web")), template("UTF-8"))),
+				canonical(output));
+	}
+
+	@Test
+	public void utf16LittleEndian() throws Exception {
+		File template = folder.newFile("template-UTF-16LE.xml");
+		byte[] content = String.format(TEMPLATE, "UTF-16").getBytes("UTF-16LE");
+		byte[] bytes = new byte[content.length + 2];
+		bytes[0] = (byte) 0xff;
+		bytes[1] = (byte) 0xfe;
+		System.arraycopy(content, 0, bytes, 2, content.length);
+		FileOutputStream outputStream = new FileOutputStream(template);
+		try {
+			outputStream.write(bytes);
+		} finally {
+			outputStream.close();
+		}
+
+		byte[] output = write(new StreamingJettyConfWriter(files("a.jar"), files("web")), template);
+
+		assertArrayEquals(new byte[] { (byte) 0xff, (byte) 0xfe }, Arrays.copyOf(output, 2));
+		assertEquals(canonical(write(new JettyConfWriter(files("a.jar"), files("web")), template("UTF-8"))),
+				canonical(output));
+	}
+
+	private List<File> files(String... paths) {
+		return files(folder, paths);
+	}
+
+	private File template(String encoding) throws IOException {
+		return template(folder, encoding, String.format(TEMPLATE, encoding));
+	}
+
+	/**
+	 * @param folder
+	 * @param paths
+	 * @return files relative to the temporary folder
+	 */
+	static List<File> files(TemporaryFolder folder, String... paths) {
+		List<File> files = new ArrayList<File>();
+		for (String path : paths) {
+			files.add(new File(folder.getRoot(), path));
+		}
+		return files;
+	}
+
+	static File template(TemporaryFolder folder, String encoding, String content) throws IOException {
+		File template = folder.newFile("template-" + encoding + ".xml");
+		FileUtils.fileWrite(template.getPath(), encoding, content);
+		return template;
+	}
+
+	static byte[] write(ContextXmlWriter writer, File template) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.writeToStream(output, template);
+		return output.toByteArray();
+	}
+
+	/**
+	 * @param xml
+	 * @return elements, attributes, non-blank text and comments of the
+	 *         document, regardless of formatting
+	 */
+	static String canonical(byte[] xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setCoalescing(true);
+		Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+		document.normalizeDocument();
+		StringBuilder canonical = new StringBuilder();
+		canonical(document.getDocumentElement(), canonical);
+		return canonical.toString();
+	}
+
+	private static void canonical(Node node, StringBuilder canonical) {
+		switch (node.getNodeType()) {
+		case Node.ELEMENT_NODE:
+			canonical.append('<').append(node.getNodeName());
+			NamedNodeMap attributes = ((Element) node).getAttributes();
+			List<String> sorted = new ArrayList<String>();
+			for (int i = 0; i < attributes.getLength(); ++i) {
+				sorted.add(attributes.item(i).getNodeName() + "=" + attributes.item(i).getNodeValue());
+			}
+			Collections.sort(sorted);
+			for (String attribute : sorted) {
+				canonical.append(' ').append(attribute);
+			}
+			canonical.append('>');
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				canonical(child, canonical);
+			}
+			canonical.append("</").append(node.getNodeName()).append('>');
+			break;
+		case Node.TEXT_NODE:
+		case Node.CDATA_SECTION_NODE:
+			String text = node.getNodeValue().trim();
+			if (text.length() > 0) {
+				canonical.append('[').append(text).append(']');
+			}
+			break;
+		case Node.COMMENT_NODE:
+			canonical.append("<!--").append(node.getNodeValue()).append("-->");
+			break;
+		default:
+			break;
+		}
+	}
+}
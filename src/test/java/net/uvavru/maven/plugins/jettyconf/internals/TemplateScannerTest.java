@@ -0,0 +1,197 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Test;
+
+public class TemplateScannerTest {
+
+	private static final String CP = "<Set name=\"extraClasspath\">";
+
+	private static final String WA = "<Array type=\"java.lang.String\">";
+
+	/**
+	 * Records the template with markers of the declarations and the slots.
+	 */
+	private static class RecordingSink implements TemplateSink {
+
+		private final StringBuilder content = new StringBuilder();
+
+		public void text(char[] chars, int offset, int length) {
+			content.append(chars, offset, length);
+		}
+
+		public void text(String text) {
+			content.append(text);
+		}
+
+		public void declarations() {
+			content.append("{D}");
+		}
+
+		public void slot(InjectionTarget target) {
+			content.append(target == InjectionTarget.CLASSPATH ? "{CP}" : "{WA}");
+		}
+	}
+
+	private static String scan(String template) throws IOException, MojoFailureException {
+		RecordingSink sink = new RecordingSink();
+		new TemplateScanner(Arrays.asList(InjectionTarget.CLASSPATH, InjectionTarget.WEBAPP)).scan(
+				new StringReader(template), sink);
+		return sink.content.toString();
+	}
+
+	@Test
+	public void slotsBeforeEndTagsAndDeclarationsAfterRootStartTag() throws Exception {
+		assertEquals("<Configure>{D}" + CP + "x{CP}</Set>" + WA + "<Item>a</Item>{WA}</Array></Configure>",
+				scan("<Configure>" + CP + "x</Set>" + WA + "<Item>a</Item></Array></Configure>"));
+	}
+
+	@Test
+	public void selfClosingTargetsAreExpanded() throws Exception {
+		assertEquals("<Configure>{D}" + CP + "{CP}</Set><Array type=\"java.lang.String\" >{WA}</Array></Configure>",
+				scan("<Configure><Set name=\"extraClasspath\"/><Array type=\"java.lang.String\" /></Configure>"));
+	}
+
+	@Test
+	public void comments() throws Exception {
+		String comment = "<!-- " + CP + " -- > </Set> -->";
+		assertEquals("<Configure>{D}" + comment + CP + "{CP}</Set>" + WA + "{WA}</Array></Configure>",
+				scan("<Configure>" + comment + CP + "</Set>" + WA + "</Array></Configure>"));
+	}
+
+	@Test
+	public void cdataSections() throws Exception {
+		String cdata = "<![CDATA[</Set> " + WA + " ]] >]]>";
+		assertEquals("<Configure>{D}" + CP + cdata + "{CP}</Set>" + WA + "{WA}</Array></Configure>",
+				scan("<Configure>" + CP + cdata + "</Set>" + WA + "</Array></Configure>"));
+	}
+
+	@Test
+	public void processingInstructions() throws Exception {
+		String declaration = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+		String instruction = "<?target a > b " + CP + "?>";
+		assertEquals(declaration + "<Configure>{D}" + instruction + CP + "{CP}</Set>" + WA + "{WA}</Array></Configure>",
+				scan(declaration + "<Configure>" + instruction + CP + "</Set>" + WA + "</Array></Configure>"));
+	}
+
+	@Test
+	public void doctypeWithInternalSubset() throws Exception {
+		String doctype = "<!DOCTYPE Configure PUBLIC \"-//Jetty//Configure//EN\" \"configure.dtd\" [\n"
+				+ "  <!ENTITY gt \">\">\n  <!-- ] > -->\n  <!ATTLIST Set name CDATA '>'>\n]>\n";
+		assertEquals(doctype + "<Configure>{D}" + CP + "{CP}</Set>" + WA + "{WA}</Array></Configure>",
+				scan(doctype + "<Configure>" + CP + "</Set>" + WA + "</Array></Configure>"));
+	}
+
+	@Test
+	public void attributeQuoting() throws Exception {
+		String classpath = "<Set class=\"a>b\" title='\"/>' name = 'extraClasspath'>";
+		String webApp = "<Array\n\ttype=\"java.lang.String\">";
+		assertEquals("<Configure>{D}" + classpath + "{CP}</Set>" + webApp + "{WA}</Array></Configure>",
+				scan("<Configure>" + classpath + "</Set>" + webApp + "</Array></Configure>"));
+	}
+
+	@Test
+	public void otherElementsAndAttributesAreNotTargets() throws Exception {
+		String template = "<Configure><Set name=\"extraClasspathX\"/><Set id=\"extraClasspath\"/>"
+				+ "<Sets name=\"extraClasspath\"/><Array type=\"java.lang.Object\"></Array>"
+				+ CP + "</Set>" + WA + "</Array></Configure>";
+		assertEquals("<Configure>{D}<Set name=\"extraClasspathX\"/><Set id=\"extraClasspath\"/>"
+				+ "<Sets name=\"extraClasspath\"/><Array type=\"java.lang.Object\"></Array>"
+				+ CP + "{CP}</Set>" + WA + "{WA}</Array></Configure>", scan(template));
+	}
+
+	@Test
+	public void nestedElementsOfTheSameName() throws Exception {
+		assertEquals("<Configure>{D}" + CP + "<Set name=\"other\">y</Set>x{CP}</Set>" + WA + "<Array>"
+				+ "</Array>{WA}</Array></Configure>",
+				scan("<Configure>" + CP + "<Set name=\"other\">y</Set>x</Set>" + WA + "<Array></Array>"
+						+ "</Array></Configure>"));
+	}
+
+	@Test
+	public void onlyTheFirstMatchingElementIsTheTarget() throws Exception {
+		assertEquals("<Configure>{D}" + CP + "{CP}</Set>" + CP + "</Set>" + WA + "{WA}</Array></Configure>",
+				scan("<Configure>" + CP + "</Set>" + CP + "</Set>" + WA + "</Array></Configure>"));
+	}
+
+	@Test
+	public void markupSpanningTheBuffer() throws Exception {
+		StringBuilder padding = new StringBuilder();
+		while (padding.length() < 8192 - "<Configure>".length() - 5) {
+			padding.append('x');
+		}
+		String template = "<Configure>" + padding + "<!-- " + padding + " -->" + padding + CP + "</Set>" + padding
+				+ WA + "</Array></Configure>";
+		assertEquals(template.replace("</Set>", "{CP}</Set>").replace("</Array>", "{WA}</Array>")
+				.replace("<Configure>", "<Configure>{D}"), scan(template));
+	}
+
+	@Test
+	public void missingTarget() throws Exception {
+		try {
+			scan("<Configure>" + CP + "</Set></Configure>");
+			fail();
+		} catch (MojoFailureException e) {
+			assertEquals("Cannot find xpath expression '" + InjectionTarget.WEBAPP.getExpression()
+					+ "' in the xml template file.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void attributeValue() {
+		assertEquals("b", TemplateScanner.attributeValue("<Set a=\"x\" b = 'b'>", 4, "b"));
+		assertEquals("x", TemplateScanner.attributeValue("<Set ab=\"y\" a=\"x\">", 4, "a"));
+		assertNull(TemplateScanner.attributeValue("<Set c=\"a='v'\">", 4, "a"));
+		assertNull(TemplateScanner.attributeValue("<Set a>", 4, "a"));
+	}
+
+	@Test
+	public void encodingDefaultsToUtf8() throws Exception {
+		assertEquals("UTF-8", detectEncoding("<Configure/>".getBytes("UTF-8")));
+		assertEquals("UTF-8", detectEncoding("<?xml version=\"1.0\"?><Configure/>".getBytes("UTF-8")));
+	}
+
+	@Test
+	public void encodingOfTheXmlDeclaration() throws Exception {
+		assertEquals("ISO-8859-2", detectEncoding("<?xml version='1.0' encoding='ISO-8859-2'?><Configure/>"
+				.getBytes("ISO-8859-2")));
+		byte[] bom = { (byte) 0xef, (byte) 0xbb, (byte) 0xbf };
+		assertEquals("windows-1250", detectEncoding(concat(bom, "<?xml version=\"1.0\" encoding=\"windows-1250\"?>"
+				.getBytes("UTF-8"))));
+	}
+
+	@Test
+	public void encodingOfTheByteOrderMark() throws Exception {
+		assertEquals("UTF-16BE", detectEncoding("<?xml version=\"1.0\" encoding=\"UTF-16\"?>".getBytes("UTF-16")));
+		assertEquals("UTF-16LE", detectEncoding(concat(new byte[] { (byte) 0xff, (byte) 0xfe },
+				"<Configure/>".getBytes("UTF-16LE"))));
+	}
+
+	@Test
+	public void detectionResetsTheStream() throws Exception {
+		InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream("<Configure/>".getBytes("UTF-8")));
+		TemplateScanner.detectEncoding(inputStream);
+		assertEquals('<', inputStream.read());
+	}
+
+	private static String detectEncoding(byte[] template) throws IOException {
+		return TemplateScanner.detectEncoding(new BufferedInputStream(new ByteArrayInputStream(template)));
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, bytes, first.length, second.length);
+		return bytes;
+	}
+}
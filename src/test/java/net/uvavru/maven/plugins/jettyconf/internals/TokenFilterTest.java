@@ -0,0 +1,179 @@
+package net.uvavru.maven.plugins.jettyconf.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.filtering.DefaultMavenFileFilter;
+import org.apache.maven.shared.filtering.MavenResourcesExecution;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils.FilterWrapper;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Test;
+
+public class TokenFilterTest {
+
+	private static final List<String> DEFAULT_DELIMITERS = Arrays.asList("${*}", "@");
+
+	private static final String[][] PROPERTIES = { { "name", "value" }, { "nested", "[${name}]" },
+			{ "nestedTwice", "(${nested}@name@)" }, { "self", "x${self}" }, { "cycle", "${loop}" },
+			{ "loop", "${cycle}" }, { "unknownInside", "${missing}" }, { "path", "C:\\dir\\file.txt" },
+			{ "uncPath", "\\\\server\\share" }, { "email", "user@example.com" }, { "empty", "" } };
+
+	@Test
+	public void nestedAndUnknownValues() throws Exception {
+		assertFiltersLikeMavenFiltering("${name} ${nested} ${nestedTwice} ${missing} ${unknownInside} ${empty}.\n"
+				+ "${missing}${name} ${name ${name}\n${\n}$x${name} ${n${name}}\n");
+	}
+
+	@Test
+	public void selfReferencingValues() throws Exception {
+		for (String text : Arrays.asList("a ${self} b\n", "a ${cycle} b\n", "@loop@\n")) {
+			try {
+				mavenFiltering(text, properties(), DEFAULT_DELIMITERS, false);
+				fail("maven-filtering accepted " + text);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			try {
+				tokenFilter(DEFAULT_DELIMITERS, false).filter(new StringReader(text), new StringWriter());
+				fail("single pass filter accepted " + text);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void atDelimiters() throws Exception {
+		assertFiltersLikeMavenFiltering("@name@ @nested@ @email@ @missing@ ${email} @name@@name@ @@\n"
+				+ "@name\nname@ @missing@name@ ${nestedTwice}\n");
+	}
+
+	@Test
+	public void windowsPaths() throws Exception {
+		for (boolean escapeWindowsPaths : new boolean[] { false, true }) {
+			assertFiltersLikeMavenFiltering("<Item>${path}</Item><Item>${uncPath}</Item>@path@ ${name}\n",
+					DEFAULT_DELIMITERS, escapeWindowsPaths);
+		}
+	}
+
+	@Test
+	public void crlfLineEndings() throws Exception {
+		assertFiltersLikeMavenFiltering("${name}\r\n@name@\r\n${na\r\nme}\r\r\n@na\r\nme@\r\n${nested}\r");
+	}
+
+	@Test
+	public void tokensAcrossTheBuffer() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int offset = 8192 - 12; offset <= 8192 + 1; ++offset) {
+			text.setLength(0);
+			while (text.length() < offset) {
+				text.append(text.length() % 100 == 99 ? '\n' : 'x');
+			}
+			text.append("${nested} @name@ ${name}\r\n");
+			// a line longer than the buffer
+			for (int i = 0; i < 1000; ++i) {
+				text.append("${name}@name@");
+			}
+			assertFiltersLikeMavenFiltering(text.toString());
+		}
+	}
+
+	@Test
+	public void customDelimiters() throws Exception {
+		assertFiltersLikeMavenFiltering("${name} @name@ #name# %nested% #missing# %name\n",
+				Arrays.asList("#", "%"), false);
+	}
+
+	/**
+	 * Documented differences, see {@code filteringEngine} of the
+	 * {@code JettyConfCopyMojo}.
+	 */
+	@Test
+	public void differencesFromMavenFiltering() throws Exception {
+		assertEquals("$value", filter("$${name}", DEFAULT_DELIMITERS));
+		assertEquals("$${name}", mavenFiltering("$${name}", properties(), DEFAULT_DELIMITERS, false));
+
+		assertEquals("value value", filter("[[name]] {{name}}", Arrays.asList("[[*]]", "{{*}}")));
+		assertEquals("[[name]] {{name}}",
+				mavenFiltering("[[name]] {{name}}", properties(), Arrays.asList("[[*]]", "{{*}}"), false));
+
+		assertEquals("@ ${name} @", filter("@ ${name} @", DEFAULT_DELIMITERS));
+		assertEquals("@ value @", mavenFiltering("@ ${name} @", properties(), DEFAULT_DELIMITERS, false));
+	}
+
+	private static void assertFiltersLikeMavenFiltering(String text) throws Exception {
+		assertFiltersLikeMavenFiltering(text, DEFAULT_DELIMITERS, false);
+	}
+
+	private static void assertFiltersLikeMavenFiltering(String text, List<String> delimiters,
+			boolean escapeWindowsPaths) throws Exception {
+		StringWriter output = new StringWriter();
+		tokenFilter(delimiters, escapeWindowsPaths).filter(new StringReader(text), output);
+
+		assertEquals(mavenFiltering(text, properties(), delimiters, escapeWindowsPaths), output.toString());
+	}
+
+	private static String filter(String text, List<String> delimiters) throws Exception {
+		StringWriter output = new StringWriter();
+		tokenFilter(delimiters, false).filter(new StringReader(text), output);
+		return output.toString();
+	}
+
+	private static TokenFilter tokenFilter(List<String> delimiters, boolean escapeWindowsPaths) {
+		final Map<String, String> properties = properties();
+		return new TokenFilter(delimiters, new TokenFilter.ValueLookup() {
+
+			public String lookup(String expression) {
+				return properties.get(expression);
+			}
+		}, escapeWindowsPaths);
+	}
+
+	private static Map<String, String> properties() {
+		Map<String, String> properties = new HashMap<String, String>();
+		for (String[] property : PROPERTIES) {
+			properties.put(property[0], property[1]);
+		}
+		return properties;
+	}
+
+	/**
+	 * @return the text filtered by the default filter wrappers of the
+	 *         maven-filtering
+	 */
+	@SuppressWarnings("unchecked")
+	private static String mavenFiltering(String text, Map<String, String> properties, List<String> delimiters,
+			boolean escapeWindowsPaths) throws Exception {
+		MavenProject project = new MavenProject(new Model());
+		project.getProperties().putAll(properties);
+
+		MavenResourcesExecution execution = new MavenResourcesExecution();
+		execution.setMavenProject(project);
+		execution.setInjectProjectBuildFilters(false);
+		execution.setDelimiters(new LinkedHashSet<String>(delimiters));
+		execution.setEscapeWindowsPaths(escapeWindowsPaths);
+
+		DefaultMavenFileFilter mavenFileFilter = new DefaultMavenFileFilter();
+		mavenFileFilter.enableLogging(new ConsoleLogger(Logger.LEVEL_DISABLED, "test"));
+		Reader reader = new StringReader(text);
+		for (FilterWrapper wrapper : (List<FilterWrapper>) mavenFileFilter.getDefaultFilterWrappers(execution)) {
+			reader = wrapper.getReader(reader);
+		}
+		StringWriter output = new StringWriter();
+		IOUtil.copy(reader, output);
+		return output.toString();
+	}
+}